@@ -0,0 +1,230 @@
+package bsoelch.cnl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**A BitRandomAccessStream that is backed up by a ByteBuffer,
+ * used for code-files to avoid an IO-operation for every read byte.
+ * Bits are read in 64-bit words, so most reads only need a single access to the buffer.
+ * Streams created from existing data are read-only, streams created with {@link #BitRandomAccessBuffer(String)}
+ * are writable and grow when data is written after their end*/
+public class BitRandomAccessBuffer extends AbstractBitRandomAccessStream {
+    /**files with at least this length are memory-mapped instead of being loaded into memory*/
+    public static final long MAP_THRESHOLD=1<<20;
+
+    private ByteBuffer data;
+    private long bitLength;
+    private long bitPos;
+    private final boolean writable;
+
+    private final String sourceId;
+
+    /**creates an empty writable stream
+     * @param sourceId unique identifier of the source of the data*/
+    public BitRandomAccessBuffer(String sourceId) {
+        this.data = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        this.bitLength = 0;
+        this.sourceId = sourceId;
+        writable=true;
+    }
+
+    /**@param data content of this stream, the buffer is accessed with absolute indices (starting at 0)
+     * @param sourceId unique identifier of the source of the data*/
+    public BitRandomAccessBuffer(ByteBuffer data, String sourceId) {
+        this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.bitLength = 8L*data.limit();
+        this.sourceId = sourceId;
+        writable=false;
+    }
+    /**@param data content of this stream
+     * @param sourceId unique identifier of the source of the data*/
+    public BitRandomAccessBuffer(byte[] data, String sourceId) {
+        this(ByteBuffer.wrap(data),sourceId);
+    }
+
+    /**opens a file for reading, small files are loaded into memory, large files are memory-mapped
+     * @see #MAP_THRESHOLD*/
+    public static BitRandomAccessBuffer open(File file) throws IOException {
+        if(file.length()<MAP_THRESHOLD){
+            return new BitRandomAccessBuffer(Files.readAllBytes(file.toPath()),file.getAbsolutePath());
+        }else{
+            return map(file);
+        }
+    }
+    /**maps the given file into memory*/
+    public static BitRandomAccessBuffer map(File file) throws IOException {
+        try(RandomAccessFile raf=new RandomAccessFile(file,"r")){
+            FileChannel channel=raf.getChannel();
+            if(channel.size()>Integer.MAX_VALUE)
+                throw new IOException(file+" is too large to be mapped into memory");
+            //the mapping stays valid after the channel is closed
+            return new BitRandomAccessBuffer(channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()),
+                    file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void seek(long newBitPos) throws IOException {
+        if(newBitPos<0)
+            throw new IOException("Negative bitPos");
+        bitPos=newBitPos;
+    }
+
+    @Override
+    public long bitPos() {
+        return bitPos;
+    }
+
+    @Override
+    public long byteLength() {
+        return (bitLength+7)/8;
+    }
+
+    @Override
+    public byte readBit() {
+        if(bitPos>=bitLength)
+            return -1;
+        int bit=(data.get((int)(bitPos>>>3))>>>(bitPos&7))&1;
+        bitPos++;
+        return (byte)bit;
+    }
+
+    /**@return the count bits starting at the current position, the caller has to ensure that these bits exist*/
+    private long peekBits(int count){
+        int byteIndex=(int)(bitPos>>>3),shift=(int)(bitPos&7);
+        long bits;
+        if(byteIndex+8<=data.limit()){
+            bits=data.getLong(byteIndex)>>>shift;
+            if(count+shift>64)
+                bits|=(data.get(byteIndex+8)&0xffL)<<(64-shift);
+        }else{//end of buffer
+            bits=0;
+            for(int i=0;byteIndex+i<data.limit();i++)
+                bits|=(data.get(byteIndex+i)&0xffL)<<(8*i);
+            bits>>>=shift;
+        }
+        return count==64?bits:bits&((1L<<count)-1);
+    }
+
+    @Override
+    public long readBitsAsLong(int count) throws IOException {
+        if(bitPos+count>bitLength)
+            throw new EOFException();
+        long bits=peekBits(count);
+        bitPos+=count;
+        return bits;
+    }
+
+    @Override
+    public int readByte() {
+        if(bitPos+8>bitLength)
+            return -1;
+        int read=(int)peekBits(8);
+        bitPos+=8;
+        return read;
+    }
+
+    @Override
+    public long read(long[] target, long off, long len) {
+        if(bitPos>=bitLength)
+            return -1;
+        long count=Math.min(len,bitLength-bitPos);
+        long totalBits=0;
+        int outIndex=(int)(off/64),outShift=(int)(off%64);
+        while(totalBits<count&&outIndex<target.length){
+            int bits=(int)Math.min(count-totalBits,64-outShift);
+            target[outIndex]|=peekBits(bits)<<outShift;
+            totalBits+=bits;
+            bitPos+=bits;
+            outShift+=bits;
+            if(outShift>=64){
+                outShift=0;
+                outIndex++;
+            }
+        }
+        return totalBits;
+    }
+
+    @Override
+    public void readFully(long[] target, long off, long len) throws IOException {
+        if(bitLength-bitPos<len)
+            throw new EOFException();
+        read(target,off,len);
+    }
+
+    /**ensures that the stream is writable and the buffer can hold the given number of bits*/
+    private void ensureWritable(long bits) throws IOException {
+        if(!writable)
+            throw new IOException("read-only stream");
+        if(bits>8L*data.limit()){
+            long newSize=Math.max(2L*data.limit(),(bits+7)/8);
+            if(newSize>Integer.MAX_VALUE)
+                throw new IOException("stream too large");
+            ByteBuffer newData=ByteBuffer.allocate((int)newSize).order(ByteOrder.LITTLE_ENDIAN);
+            newData.put(data.array(),0,data.limit());
+            newData.clear();
+            data=newData;
+        }
+    }
+
+    @Override
+    public void truncateToSize(boolean byteFillOne) throws IOException {
+        ensureWritable(bitPos);
+        int bitIndex=(int)(bitPos&7);
+        if(bitIndex!=0){
+            int index=(int)(bitPos>>>3);
+            int current=data.get(index)&0xff;
+            if (byteFillOne) {
+                current |= 0xff & (0xff << bitIndex);
+            } else {
+                current &= 0xff >> 8 - bitIndex;
+            }
+            data.put(index,(byte)current);
+        }
+        bitLength=(bitPos+7)&~7L;
+        for(int i=(int)(bitLength>>>3);i<data.limit();i++)//clear truncated data
+            data.put(i,(byte)0);
+    }
+    @Override
+    public void writeBit(boolean isSet) throws IOException {
+        ensureWritable(bitPos+1);
+        int index=(int)(bitPos>>>3);
+        int mask=1<<(bitPos&7);
+        data.put(index,(byte)(isSet?data.get(index)|mask:data.get(index)&~mask));
+        bitPos++;
+        bitLength=Math.max(bitLength,bitPos);
+    }
+    @Override
+    public void write(long[] source, long off, long len) throws IOException {
+        ensureWritable(bitPos+len);
+        long written=0;
+        while(written<len){//write bits byte by byte
+            int shift=(int)(bitPos&7);
+            int bits=(int)Math.min(len-written,8-shift);
+            int sIndex=(int)((off+written)>>>6),sShift=(int)((off+written)&63);
+            long value=source[sIndex]>>>sShift;
+            if(sShift+bits>64)
+                value|=source[sIndex+1]<<(64-sShift);
+            int mask=((1<<bits)-1)<<shift;
+            int index=(int)(bitPos>>>3);
+            data.put(index,(byte)((data.get(index)&~mask)|(((int)value<<shift)&mask)));
+            written+=bits;
+            bitPos+=bits;
+        }
+        bitLength=Math.max(bitLength,bitPos);
+    }
+    /**nothing to write, all changes are directly applied to the buffer*/
+    @Override
+    public void writeChanges() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public String getSourceId() {
+        return sourceId;
+    }
+}
@@ -2,12 +2,9 @@ package bsoelch.cnl;
 
 
 import java.io.*;
-import java.math.BigInteger;
-
-import java.nio.charset.StandardCharsets;
 
 /**A BitRandomAccessStream that is backed up by a File*/
-public class BitRandomAccessFile implements BitRandomAccessStream {
+public class BitRandomAccessFile extends AbstractBitRandomAccessStream {
     final Object ioLock=new Object();
     final RandomAccessFile byteFile;
     long bytePos;
@@ -22,9 +19,6 @@ public class BitRandomAccessFile implements BitRandomAccessStream {
 
     final private String path;
 
-    private Reader readerCache=null;
-    private Writer writerCache=null;
-
     /**@param file source File, has to be non-null
      * @param mode RandomAccessMode link in {@link RandomAccessFile(File,String) RandomAccessFile}
      * */
@@ -148,11 +142,18 @@ public class BitRandomAccessFile implements BitRandomAccessStream {
     public int readByte() throws IOException {
         if(bitIndex==0){//redirect call if aligned to file-bytes
             synchronized (ioLock) {
+                writeChanges();
                 byteFile.seek(bytePos);
-                return byteFile.read();
+                int read=byteFile.read();
+                if(read!=-1){
+                    bytePos++;
+                    cachedBits=0;
+                    cacheChanged=false;
+                }
+                return read;
             }
         }else{
-            return BitRandomAccessStream.super.readByte();
+            return super.readByte();
         }
     }
 
@@ -160,11 +161,13 @@ public class BitRandomAccessFile implements BitRandomAccessStream {
     public void writeByte(int aByte) throws IOException {
         if(bitIndex==0){//redirect call if aligned to file-bytes
             synchronized (ioLock) {
-                byteFile.seek(bytePos);
+                byteFile.seek(bytePos++);
                 byteFile.write(aByte);
+                cachedBits=0;
+                cacheChanged=false;
             }
         }else{
-            BitRandomAccessStream.super.writeByte(aByte);
+            super.writeByte(aByte);
         }
     }
 
@@ -206,6 +209,8 @@ public class BitRandomAccessFile implements BitRandomAccessStream {
                 }else{
                     return -1;
                 }
+            }else{
+                l+=i0;//include cached byte
             }
             bitShift=bitIndex;//remember shift of first bit
             long pos= bitPos();
@@ -307,267 +312,6 @@ public class BitRandomAccessFile implements BitRandomAccessStream {
         }
     }
 
-    @Override
-    public BigInteger readBits(int count) throws IOException {
-        long[] data=new long[(count+63)/64];
-        readFully(data,0,count);
-        return fromBits(data);
-    }
-    @Override
-    public void writeBits(BigInteger data, int count) throws IOException {
-        long[] bits=new long[(count+63)/64];
-        copyBits(data.and(BigInteger.ONE.shiftLeft(count).subtract(BigInteger.ONE)),bits);
-        write(bits,0,count);
-    }
-
-    @Override
-    public void writeBigInt(BigInteger value, int headerLength, int blockLength, int bigBlockLength) throws IOException {
-        if(value.signum()<0)
-            throw new IllegalArgumentException("value has to be at least 0");
-        if(headerLength<2)
-            throw new IllegalArgumentException("headerLength has to be at least 2");
-        if(blockLength<2)
-            throw new IllegalArgumentException("blockLength has to be at least 2");
-        if(bigBlockLength<blockLength)
-            throw new IllegalArgumentException("bigBlockLength has to be greater than or equal to blockLength");
-        long[] numberBits=new long[(headerLength+63)/64];
-        if(value.bitLength()<headerLength){//small number
-            copyBits(value,numberBits);
-            write(numberBits,0,headerLength);
-        }else{
-            BigInteger maxHeaderPlusOne=BigInteger.ONE.shiftLeft(headerLength-1);
-            BigInteger blockSize=BigInteger.ONE.shiftLeft(blockLength),sectionSize=blockSize;
-            value=value.subtract(maxHeaderPlusOne);//
-            BigInteger blocks=BigInteger.ONE;
-            while(blocks.compareTo(maxHeaderPlusOne)<0&&value.compareTo(sectionSize)>=0){
-                value=value.subtract(sectionSize);
-                sectionSize=sectionSize.multiply(blockSize);
-                blocks=blocks.add(BigInteger.ONE);
-            }
-            if(blocks.compareTo(maxHeaderPlusOne)<0){//large Number
-                copyBits(blocks.or(maxHeaderPlusOne),numberBits);
-                write(numberBits,0,headerLength);
-                long bitLength = blocks.intValueExact() * ((long)blockLength);
-                numberBits=new long[(int)((bitLength+63)/64)];
-                copyBits(value,numberBits);
-                write(numberBits,0,bitLength);
-            }else{//very large number
-                blockSize=BigInteger.ONE.shiftLeft(bigBlockLength);
-                //size of the minimal section
-                int blocksOffset = (int) (((maxHeaderPlusOne.longValueExact()-1) * blockLength-1) / bigBlockLength)+1;
-                sectionSize=blockSize.pow(blocksOffset);
-                blocks=BigInteger.ZERO; //block counter offset by minimal size
-                while(value.compareTo(sectionSize)>=0){
-                    value=value.subtract(sectionSize);
-                    sectionSize=sectionSize.multiply(blockSize);
-                    blocks=blocks.add(BigInteger.ONE);
-                }
-                copyBits(maxHeaderPlusOne,numberBits);
-                write(numberBits,0,headerLength);
-                writeBigInt(blocks,headerLength,blockLength,bigBlockLength);
-                long bitLength = (blocks.intValueExact()+blocksOffset) * ((long)bigBlockLength);
-                numberBits=new long[(int)((bitLength+63)/64)];
-                copyBits(value,numberBits);
-                write(numberBits,0,bitLength);
-            }
-        }
-    }
-    /**copies bits from a BigInteger to a longArray,
-     * the data will be written in small-endian order
-     * @param source BigInteger from which the bits are read
-     * @param target long[] to that the bits are copied*/
-    private void copyBits(BigInteger source, long[] target){
-        if(target.length*64<source.bitLength())
-            throw new IllegalArgumentException("target is to small:"+target.length+" required: "+((source.bitLength()+63)/64));
-        byte[] bytes=source.toByteArray();
-        for(int i = 0;i<bytes.length; i++){
-            for(int j=0;j<8&&8*i+j<bytes.length;j++){
-                target[i]|=(0xffL&bytes[bytes.length-(8*i+j+1)])<<8*j;
-            }
-        }
-    }
-
-    @Override
-    public BigInteger readBigInt(int headerLength, int blockLength, int bigBlockLength) throws IOException {
-        if(headerLength<2)
-            throw new IllegalArgumentException("headerLength has to be at least 2");
-        if(blockLength<2)
-            throw new IllegalArgumentException("blockLength has to be at least 2");
-        if(bigBlockLength<blockLength)
-            throw new IllegalArgumentException("bigBlockLength has to be greater than or equal to blockLength");
-        long[] numberBits=new long[(headerLength+63)/64];
-        readFully(numberBits,0,headerLength);
-        int hiInd=(headerLength-1)/64;
-        int hiMask=1<<((headerLength-1)%64);
-        if((numberBits[hiInd]&hiMask)==0){//small number
-            return fromBits(numberBits);
-        }else{//large number
-            numberBits[hiInd]^=hiMask;//set hiBit to 0
-            BigInteger len=fromBits(numberBits);
-            long maxHeaderPlus1 = 1L << headerLength-1;
-            BigInteger offset=BigInteger.valueOf(maxHeaderPlus1);//offset for block Numbers
-            BigInteger blockSize=BigInteger.valueOf(1).shiftLeft(blockLength);
-            long bitsToRead,blockCount;
-            if(len.signum()==0){//very large number
-                len= readBigInt(headerLength,blockLength,bigBlockLength);
-                long blockOffset = (((maxHeaderPlus1-1) * blockLength-1) / bigBlockLength)+1;
-                blockCount = len.intValueExact() + blockOffset;
-                bitsToRead = ((long)bigBlockLength)* blockCount;
-
-                //starting offset for very large numbers
-                offset=offset.add((blockSize.pow((int)maxHeaderPlus1).subtract(BigInteger.ONE)).
-                        divide(blockSize.subtract(BigInteger.ONE))).subtract(BigInteger.ONE);
-                if(blockCount>blockOffset){//offset for each layer
-                    blockSize=BigInteger.valueOf(1).shiftLeft(bigBlockLength);
-                    offset=offset.add((blockSize.pow((int)blockCount).subtract(BigInteger.ONE)).
-                            divide(blockSize.subtract(BigInteger.ONE))).subtract(
-                                    (blockSize.pow((int)blockOffset).subtract(BigInteger.ONE)).
-                            divide(blockSize.subtract(BigInteger.ONE)));
-                }
-            }else{
-                blockCount = len.intValueExact() ;
-                bitsToRead = ((long)blockLength)* blockCount;
-
-                if(blockCount>1){//offset for each layer
-                    offset=offset.add((blockSize.pow((int)blockCount).subtract(BigInteger.ONE)).
-                            divide(blockSize.subtract(BigInteger.ONE))).subtract(BigInteger.ONE);
-                }
-            }
-            numberBits=new long[(int)((bitsToRead +63)/64)];
-            readFully(numberBits,0,bitsToRead);
-            //offset to reduce duplicate numbers
-            return fromBits(numberBits).add(offset);
-        }
-    }
-    /**@param numberBits bits in the number (in small endian format)
-     * @return an unsigned BigInteger with the binary representation given by {@code numberBits}
-     * */
-    private BigInteger fromBits(long[] numberBits) {
-        byte[] bytes=new byte[8* numberBits.length+1];
-        for(int i = 0; i< numberBits.length; i++){
-            for(int j=0;j<8;j++){
-                bytes[bytes.length-(8*i+j+1)]=(byte)((numberBits[i]>>>8*j)&0xff);
-            }
-        }
-        return new BigInteger(bytes);
-    }
-
-
-
-    public Reader reader(){
-        if (readerCache == null) {
-            readerCache = new Reader() {//direct implementation to ensure that no additional bytes are read
-                long mark=-1;
-                int surrogateCache=-1;
-                @Override
-                public int read() throws IOException {
-                    if(surrogateCache==-1){
-                        int cp=readUTF8();
-                        if(cp==-1){
-                            return -1;
-                        }else{
-                            char[] chars=Character.toChars(cp);
-                            if(chars.length>1)//cannot be greater than 2
-                                surrogateCache=chars[1];
-                            return chars[0];
-                        }
-                    }else{
-                        char tmp= (char) surrogateCache;
-                        surrogateCache=-1;
-                        return tmp;
-                    }
-                }
-
-                @Override
-                public int read(char[] cbuf, int off, int len) throws IOException {
-                    //TODO readMultipleChars support
-                    int r;
-                    for(int i=0;i<len;i++){
-                        r=read();
-                        if(r==-1){
-                            return i==0?-1:i;
-                        }
-                        cbuf[i+off]=(char)r;
-                    }
-                    return len;
-                }
-
-                /**marks to current position for {@link #reset()}
-                 * @param readAheadLimit is ignored in this implementation
-                 * @see #reset() */
-                @Override
-                public void mark(int readAheadLimit){
-                    mark=bitPos();
-                }
-
-                /**{@inheritDoc}*/
-                @Override
-                public boolean markSupported() {
-                    return true;
-                }
-
-                /**goes to the marked position if existent
-                 * @throws IOException if no position was marked
-                 * @see #mark*/
-                @Override
-                public void reset() throws IOException {
-                    if(mark!=-1){
-                        seek(mark);
-                    }else{
-                        throw new IOException("mark not set");
-                    }
-                }
-
-                @Override
-                public void close() throws IOException {
-                    BitRandomAccessFile.this.close();
-                }
-            };
-        }
-        return readerCache;
-    }
-    public Writer writer(){
-        if (writerCache == null) {
-            writerCache =new Writer(){
-                int surrogateCache=-1;
-                @Override
-                public void write(int c) throws IOException {
-                    if(surrogateCache==-1){
-                        if(Character.isHighSurrogate((char)c)){
-                            surrogateCache=c&0xffff;
-                        }else{
-                            writeUTF8(c&0xffff);
-                        }
-                    }else{
-                        if(Character.isLowSurrogate((char) c)){
-                            int cp=Character.toCodePoint((char)surrogateCache,(char)c);
-                            writeUTF8(cp);
-                            surrogateCache=-1;
-                        }
-                    }
-                }
-
-                @Override
-                public void write(char[] cbuf, int off, int len) throws IOException {
-                    byte[] bytes=new String(cbuf,off,len).getBytes(StandardCharsets.UTF_8);
-                    writeBytes(bytes,0,bytes.length);
-                }
-
-                @Override
-                public void flush() throws IOException {
-                    writeChanges();
-                }
-
-                @Override
-                public void close() throws IOException {
-                    BitRandomAccessFile.this.close();
-                }
-            };
-        }
-        return writerCache;
-    }
-
-
     @Override
     public void close() throws IOException {
         try {
@@ -24,13 +24,21 @@ public interface BitRandomAccessStream extends Closeable {
     /**writes one bit the this stream*/
     void writeBit(boolean isSet) throws IOException;
 
+    /**reads up to 64 bits from the stream
+     * @param count number of bits to read (0-64)
+     * @return the read bits (little-endian)
+     * @throws java.io.EOFException if the file ends*/
+    default long readBitsAsLong(int count) throws IOException {
+        long[] cache=new long[1];
+        readFully(cache, 0, count);
+        return cache[0];
+    }
+
     /**reads one byte from the stream
      * @return 0-255 value of the byte or -1 if the end of file is reached while reading the byte*/
     default int readByte() throws IOException {
-        long[] cache=new long[1];
         try {
-            readFully(cache, 0, 8);
-            return (int)(cache[0]&0xff);
+            return (int)(readBitsAsLong(8)&0xff);
         }catch (EOFException eof){
             return -1;
         }
@@ -175,6 +183,38 @@ public interface BitRandomAccessStream extends Closeable {
      * */
     BigInteger readBigInt(int headerLength, int blockLength, int bigBlockLength) throws IOException;
 
+    /**reads a number encoded as described in {@link #readBigInt(int, int, int)} without creating a BigInteger,
+     * if the number is small enough to fit in a long
+     * @param headerLength length of the BigInt-header has to be between 2 and 63
+     * @param blockLength length of the BigInt-blocks has to be at least 2
+     * @param bigBlockLength length of the blocks in BigIntegers with recursive headers has to be >= blockLength
+     * @return the value of the number or -1 if the number does not fit in a long,
+     *  in that case the position of the stream is not changed*/
+    default long readSmallInt(int headerLength, int blockLength, int bigBlockLength) throws IOException {
+        if(headerLength<2||headerLength>63)
+            throw new IllegalArgumentException("headerLength has to be between 2 and 63");
+        if(blockLength<2)
+            throw new IllegalArgumentException("blockLength has to be at least 2");
+        if(bigBlockLength<blockLength)
+            throw new IllegalArgumentException("bigBlockLength has to be greater than or equal to blockLength");
+        long start=bitPos();
+        long header=readBitsAsLong(headerLength);
+        long hiBit=1L<<(headerLength-1);
+        if((header&hiBit)==0)//small number
+            return header;
+        long blockCount=header^hiBit;
+        //very large numbers and numbers with more than 61 bits are read as BigInteger
+        if(blockCount==0||blockCount*blockLength>61){
+            seek(start);
+            return -1;
+        }
+        int bitsToRead=(int)blockCount*blockLength;
+        long offset=hiBit;
+        if(blockCount>1)//offset for each layer
+            offset+=((1L<<bitsToRead)-1)/((1L<<blockLength)-1)-1;
+        return readBitsAsLong(bitsToRead)+offset;
+    }
+
     /** Writes a BigInteger to this stream that can be read with the algorithm described in {@link #readBigInt(int, int, int)}
      * @param value value to write to this file
      * @param headerLength then of the BigInt-header
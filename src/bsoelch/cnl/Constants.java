@@ -1052,7 +1052,7 @@ public class Constants {
                     {
                         //sum of the given elements
                         OperatorInfo sum=declareOperator("SUM", null, 3, true, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.nAryReduce(args,Real.Int.ZERO,MathObject::add), 0);
+                                MathObject::nArySum, 0);
                         NAryInfo info=new NAryInfo(Real.Int.ZERO,sum,true,true);
                         info.addShortCut(ID);
                         info.addShortCut(add);
@@ -1060,17 +1060,17 @@ public class Constants {
                     {
                         //deep sum of all elements in A
                         OperatorInfo deepSum1=declareOperator("DEEP_SUM1", null, 1, false, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.deepNAryReduce(args,Real.Int.ZERO, NumericValue::add), 0);
+                                MathObject::deepNArySum, 0);
                         //deep sum of the given elements
                         OperatorInfo deepSum=declareOperator("DEEP_SUM", null, 2, true, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.deepNAryReduce(args,Real.Int.ZERO, NumericValue::add), 0);
+                                MathObject::deepNArySum, 0);
                         NAryInfo info=new NAryInfo(Real.Int.ZERO,deepSum,true,true);
                         info.addShortCut(deepSum1);
                     }
                     {
                         //product of the given elements
                         OperatorInfo prod=declareOperator("PRODUCT", "PROD", 3, true, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.nAryReduce(args,Real.Int.ONE,MathObject::multiply), 0);
+                                MathObject::nAryProduct, 0);
                         NAryInfo info=new NAryInfo(Real.Int.ONE,prod,true,true);
                         info.addShortCut(ID);
                         info.addShortCut(mult);
@@ -1078,10 +1078,10 @@ public class Constants {
                     {
                         //deep product of all elements in A
                         OperatorInfo deepProd1=declareOperator("DEEP_PRODUCT1", "DEEP_PROD1", 1, false, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.deepNAryReduce(args,Real.Int.ONE, NumericValue::multiply), 0);
+                                MathObject::deepNAryProduct, 0);
                         //deep product of the given elements
                         OperatorInfo deepProd=declareOperator("DEEP_PRODUCT", "DEEP_PROD", 2, true, MODIFY_ARG0_ROOT,
-                                (args)->MathObject.deepNAryReduce(args,Real.Int.ONE, NumericValue::multiply), 0);
+                                MathObject::deepNAryProduct, 0);
                         NAryInfo info=new NAryInfo(Real.Int.ONE,deepProd,true,true);
                         info.addShortCut(deepProd1);
                     }
@@ -1181,7 +1181,7 @@ public class Constants {
                     {
                         //union of the given elements
                         OperatorInfo union=declareOperator("UNION", null, 3, true, MODIFY_ARG0_ROOT,
-                                MathObject::nAryTimes, 0);
+                                (args)->MathObject.nAryReduceBalanced(args,FiniteSet.EMPTY_SET,MathObject::unite), 0);
                         NAryInfo info=new NAryInfo(FiniteSet.EMPTY_SET,union,true,true);
                         info.addShortCut(ID);
                         info.addShortCut(unite);
@@ -1189,7 +1189,7 @@ public class Constants {
                     {
                         //intersection of the given elements
                         OperatorInfo union=declareOperator("INTERSECTION", "N_CUT", 3, true, MODIFY_ARG0_ROOT,
-                                MathObject::nAryTimes, 0);
+                                (args)->MathObject.nAryReduceBalanced(args,FiniteSet.EMPTY_SET,MathObject::intersect), 0);
                         NAryInfo info=new NAryInfo(FiniteSet.EMPTY_SET,union,true,true);
                         info.addShortCut(ID);
                         info.addShortCut(cut);
@@ -1510,6 +1510,18 @@ public class Constants {
                 }
                 //? GUI
 
+                //operators declared after all other operators, to keep the ids of the existing operators
+                {
+                    //calculates the power A^n of the square Matrix A
+                    declareBinaryOperator("MAT_POW", null, MODIFY_ARG0_ROOT,
+                                    (l,r)->{
+                                        if(r instanceof Real.Int){
+                                            return Matrix.matrixPow(Matrix.asMatrix(l),((Real.Int) r).num());
+                                        }else{
+                                            throw new ArithmeticException("non integer power:"+r);
+                                        }
+                                    }, 0);
+                }
             }
         }
 
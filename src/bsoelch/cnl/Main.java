@@ -1,6 +1,7 @@
 package bsoelch.cnl;
 
 import bsoelch.cnl.interpreter.*;
+import bsoelch.cnl.math.BigArithmetic;
 import bsoelch.cnl.math.MathObject;
 import bsoelch.cnl.math.Real;
 import bsoelch.cnl.math.Tuple;
@@ -64,10 +65,10 @@ public class Main {
     public static void decompile(File source, File target) throws IOException, SyntaxError, CNL_RuntimeException {
         Translator.decompile(source,target);
     }
-    public static MathObject execute(File code,MathObject[] args,boolean forceRunLibs) throws IOException, SyntaxError, CNL_RuntimeException {
+    public static MathObject execute(File code,MathObject[] args,boolean forceRunLibs,boolean useCodeTree) throws IOException, SyntaxError, CNL_RuntimeException {
         Interpreter ip=new Interpreter(code,args, forceRunLibs);
         System.out.println();//space to separate code output from rest of console
-        return ip.run();
+        return useCodeTree?ip.runCompiled():ip.run();
     }
 
     //addLater customizable IO-console, getFileByUrl, ...
@@ -145,7 +146,7 @@ public class Main {
             System.out.println();
             printExpectedArgs();
         }else{
-            boolean runLibs=false;
+            boolean runLibs=false,useCodeTree=false;
             String source=null,decompile=null,main=null;
             MathObject[] programArgs=null;
             int actions=0;
@@ -214,6 +215,14 @@ public class Main {
                             last="-libx";
                             runLibs=true;
                         break;
+                        case "-tree":
+                            last="-tree";
+                            useCodeTree=true;
+                        break;
+                        case "-parallel":
+                            last="-parallel";
+                            BigArithmetic.setParallel(true);
+                        break;
                         default:{
                             if(last!=null) {
                                 switch (last) {
@@ -233,6 +242,21 @@ public class Main {
                                             return;
                                         }
                                     break;
+                                    case "-parallel":
+                                        if(args[i].matches("\\d+")){
+                                            try{
+                                                BigArithmetic.setParallelThreshold(Integer.parseInt(args[i]));
+                                            }catch (IllegalArgumentException iae){
+                                                System.out.println("Syntax Error: "+iae.getMessage());
+                                                return;
+                                            }
+                                        }else if(main==null){//argument is the main file
+                                            main=args[i];
+                                        }else{
+                                            System.out.println("Syntax Error: main-file is already defined");
+                                            return;
+                                        }
+                                    break;
                                     default:
                                         if(main==null){
                                             main=args[i];
@@ -336,7 +360,7 @@ public class Main {
                 }
 
                 try {
-                    MathObject res=execute(fileFromPath(main),programArgs,runLibs);
+                    MathObject res=execute(fileFromPath(main),programArgs,runLibs,useCodeTree);
                     System.out.println("Execution finished with return-value: "+res);
                 }catch (IOException io){
                     System.out.println("IOException during Execution:");
@@ -388,6 +412,9 @@ public class Main {
         System.out.println("-d\t decompile the main file to a cnl-assembly file, the target file can be supplied as an optional Argument");
         System.out.println("-t\t test the mainFile for syntax errors (is automatically included for -c and -d)");
         System.out.println("-libX\t allows the execution of library cnl files");
+        System.out.println("-tree\t executes the main file as a precompiled code-tree instead of step by step");
+        System.out.println("-parallel\t uses multiple threads for multiplications and divisions of very large numbers," +
+                " the minimal number of bits for the parallel algorithms can be supplied as an optional Argument");
         System.out.println("-args\t supplies Program Arguments as a comma separated list surrounded with brackets");
         System.out.println("\nExamples:");
         System.out.println("cnl \"./name.cnl\"  \t\t runs the File \"name.cnl\" in the local directory");
@@ -0,0 +1,180 @@
+package bsoelch.cnl.interpreter;
+
+import bsoelch.cnl.BitRandomAccessStream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static bsoelch.cnl.Constants.*;
+
+/**Cache for decoded binary code,
+ * maps the position of each action (sourceId+bitPos) to its decoded template and the position of the next action,
+ * so code that is executed multiple times (loops, function bodies) only has to be decoded once*/
+class ActionCache {
+    private static class Entry{
+        final ActionTemplate template;
+        final long start,end;
+
+        Entry(ActionTemplate template, long start, long end) {
+            this.template = template;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class Source{
+        final HashMap<Long,Entry> actions=new HashMap<>();
+        /**maps the declarationStart of IF/ELIF to the position of the next ELIF/ELSE/END of the same IF*/
+        HashMap<Long,Long> nextBranch;
+        /**maps the declarationStart of each IF/WHILE (and each ELIF/ELSE) to the position of the END closing it*/
+        HashMap<Long,Long> bracketEnd;
+        /**maps the start of each function body and DO-loop body to the position of the END/END_WHILE closing it,
+         * stored separately from bracketEnd as an IF/WHILE can start at the same position as the enclosing body*/
+        HashMap<Long,Long> bodyEnd;
+    }
+
+    /**open bracket while indexing the code*/
+    private static class OpenBracket{
+        final int type;
+        final long key;
+        /**declarationStart of all IF/ELIF/ELSE of this bracket*/
+        final ArrayList<Long> branches=new ArrayList<>(1);
+        boolean hasElse;
+
+        OpenBracket(int type, long key) {
+            this.type = type;
+            this.key = key;
+            branches.add(key);
+        }
+
+        long lastBranch(){
+            return branches.get(branches.size()-1);
+        }
+    }
+    private static final int TYPE_FUNCTION=-1;
+
+    private final HashMap<String,Source> sources=new HashMap<>();
+    //cache of last used source, to avoid resolving the sourceId in every step
+    private BitRandomAccessStream lastCode;
+    private Source lastSource;
+
+    private Source source(BitRandomAccessStream code){
+        if(code!=lastCode){
+            lastSource=sources.computeIfAbsent(code.getSourceId(), k->new Source());
+            lastCode=code;
+        }
+        return lastSource;
+    }
+
+    private Entry nextEntry(BitRandomAccessStream code) throws IOException {
+        HashMap<Long,Entry> actions=source(code).actions;
+        long pos=code.bitPos();
+        Entry entry=actions.get(pos);
+        if(entry==null){
+            ActionTemplate template=Translator.decodeAction(code);
+            entry=new Entry(template,pos,code.bitPos());
+            actions.put(pos,entry);
+        }else{
+            code.seek(entry.end);
+        }
+        return entry;
+    }
+
+    /**reads the next action from the given binary code-stream,
+     * if the action at the current position was already decoded the stream is moved directly to the next action
+     * @see Translator#nextAction(BitRandomAccessStream, Context, ExecutionEnvironment, boolean, boolean) */
+    Action nextAction(BitRandomAccessStream code, Context context,
+                      ExecutionEnvironment executionEnvironment, boolean isTopLayer, boolean skip) throws IOException {
+        Entry entry=nextEntry(code);
+        return entry.template.create(code,entry.start,entry.end,context,executionEnvironment,isTopLayer,skip);
+    }
+
+    /**decodes all actions from the current position to the end of the code
+     * and records the matching ELIF/ELSE/END for every bracket, to allow skipping brackets without reading their content.
+     * The position of the code is not changed.
+     * If the brackets are not well-formed no index is created,
+     * the errors will then be reported while skipping the code*/
+    void indexBrackets(BitRandomAccessStream code) throws IOException {
+        Source source=source(code);
+        if(source.bracketEnd!=null)
+            return;
+        long pos=code.bitPos();
+        HashMap<Long,Long> nextBranch=new HashMap<>(),bracketEnd=new HashMap<>(),bodyEnd=new HashMap<>();
+        ArrayDeque<OpenBracket> open=new ArrayDeque<>();
+        try{
+            Entry entry;
+            while((entry=nextEntry(code)).template!=Translator.EOF_TEMPLATE){
+                if(entry.template instanceof ActionTemplate.FunctionDefinition){
+                    open.addLast(new OpenBracket(TYPE_FUNCTION,entry.end));
+                }else if(entry.template instanceof ActionTemplate.Bracket){
+                    int type=((ActionTemplate.Bracket) entry.template).type;
+                    long key=((ActionTemplate.Bracket) entry.template).declarationStart(entry.start,entry.end);
+                    OpenBracket top=open.peekLast();
+                    switch (type){
+                        case BRACKET_FLAG_IF_EQ:
+                        case BRACKET_FLAG_IF_NE:
+                        case BRACKET_FLAG_WHILE_EQ:
+                        case BRACKET_FLAG_WHILE_NE:
+                        case BRACKET_FLAG_DO:
+                            open.addLast(new OpenBracket(type,key));
+                            break;
+                        case BRACKET_FLAG_ELIF_EQ:
+                        case BRACKET_FLAG_ELIF_NE:
+                        case BRACKET_FLAG_ELSE:
+                            if(top==null||top.hasElse||(top.type!=BRACKET_FLAG_IF_EQ&&top.type!=BRACKET_FLAG_IF_NE))
+                                return;//malformed code
+                            nextBranch.put(top.lastBranch(),entry.start);
+                            top.branches.add(key);
+                            top.hasElse=type==BRACKET_FLAG_ELSE;
+                            break;
+                        case BRACKET_FLAG_END_WHILE_EQ:
+                        case BRACKET_FLAG_END_WHILE_NE:
+                            if(top==null||top.type!=BRACKET_FLAG_DO)
+                                return;//malformed code
+                            open.removeLast();
+                            bodyEnd.put(top.key,entry.start);
+                            break;
+                        case BRACKET_FLAG_END:
+                            if(top==null)
+                                return;//malformed code
+                            open.removeLast();
+                            if(top.type==TYPE_FUNCTION||top.type==BRACKET_FLAG_DO){
+                                bodyEnd.put(top.key,entry.start);
+                                break;
+                            }
+                            for(Long branch:top.branches)
+                                bracketEnd.put(branch,entry.start);
+                            if(top.type==BRACKET_FLAG_IF_EQ||top.type==BRACKET_FLAG_IF_NE)
+                                nextBranch.put(top.lastBranch(),entry.start);
+                            break;
+                    }
+                }
+            }
+            if(!open.isEmpty())
+                return;//unfinished bracket
+            source.nextBranch=nextBranch;
+            source.bracketEnd=bracketEnd;
+            source.bodyEnd=bodyEnd;
+        }catch (IOException|IllegalArgumentException|IllegalStateException|ArithmeticException e){
+            //invalid or truncated code, errors are reported when the code is executed
+        }finally {
+            code.seek(pos);
+        }
+    }
+
+    /**@param bracketStart declarationStart of the bracket (or start of the body) that should be skipped
+     * @param isBody true if bracketStart is the start of a function body or DO-loop body
+     * @param toNextBranch if true the position of the next ELIF/ELSE/END of an IF/ELIF is returned,
+     *                     otherwise the position of the END of the bracket
+     * @return the position of the requested bracket-marker in code, or -1 if the position is not indexed*/
+    long skipTarget(BitRandomAccessStream code,long bracketStart,boolean isBody,boolean toNextBranch){
+        Source source=source(code);
+        HashMap<Long,Long> map=isBody?source.bodyEnd:toNextBranch?source.nextBranch:source.bracketEnd;
+        if(map==null)
+            return -1;
+        Long target=map.get(bracketStart);
+        return target==null?-1:target;
+    }
+}
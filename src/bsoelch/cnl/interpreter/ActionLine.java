@@ -0,0 +1,44 @@
+package bsoelch.cnl.interpreter;
+
+import java.util.Arrays;
+
+/**the actions of a line of code, the string representation of the line is only created when it is needed
+ * (for the stack of a {@link CNL_Exception})*/
+class ActionLine {
+    /**Actions or (for actions with a mutable representation) Strings*/
+    private Object[] items=new Object[16];
+    private int size;
+
+    void add(Action a){
+        if(size==items.length)
+            items=Arrays.copyOf(items,2*size);
+        Object item=a;
+        if(a instanceof VarPointer&&((VarPointer) a).getVarId()==null){
+            item=a.stringRepresentation();//id of dynamic var is set after this step
+        }else if(a instanceof Output){
+            item=a.stringRepresentation();//invalid output flags are reported before the action is executed
+        }
+        items[size++]=item;
+    }
+    void set(ActionLine line){
+        if(items.length<line.size)
+            items=new Object[line.items.length];
+        System.arraycopy(line.items,0,items,0,line.size);
+        size=line.size;
+    }
+    void clear(){
+        size=0;
+    }
+    boolean isEmpty(){
+        return size==0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line=new StringBuilder();
+        for(int i=0;i<size;i++){
+            line.append(items[i] instanceof Action?((Action) items[i]).stringRepresentation():items[i]).append(' ');
+        }
+        return line.toString();
+    }
+}
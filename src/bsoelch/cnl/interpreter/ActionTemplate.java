@@ -0,0 +1,58 @@
+package bsoelch.cnl.interpreter;
+
+import bsoelch.cnl.BitRandomAccessStream;
+
+import java.math.BigInteger;
+
+import static bsoelch.cnl.Constants.BRACKET_FLAG_DO;
+
+/**Decoded form of a binary code action, that only depends on the code itself,
+ * used to create the Action for a specific program state without decoding it again*/
+interface ActionTemplate {
+    /**@param code stream the action was read from
+     * @param start bit-position of the first bit of the action
+     * @param end bit-position directly after the action
+     * @return the Action described by this template in the given context*/
+    Action create(BitRandomAccessStream code, long start, long end, Context context,
+                  ExecutionEnvironment executionEnvironment, boolean isTopLayer, boolean skip);
+
+    /**Template of a BracketDeclaration,
+     * the type is accessible to allow indexing the bracket structure of the code*/
+    final class Bracket implements ActionTemplate{
+        final int type;
+
+        Bracket(int type) {
+            this.type = type;
+        }
+
+        /**@return the position the BracketDeclaration uses as declarationStart*/
+        long declarationStart(long start, long end){
+            return type==BRACKET_FLAG_DO?end:start;
+        }
+
+        @Override
+        public Action create(BitRandomAccessStream code, long start, long end, Context context,
+                             ExecutionEnvironment executionEnvironment, boolean isTopLayer, boolean skip) {
+            return new BracketDeclaration(context, type, new Interpreter.CodePosition(code, false, declarationStart(start, end)));
+        }
+    }
+
+    /**Template of a FunctionDeclaration, the body of the function starts directly after the declaration*/
+    final class FunctionDefinition implements ActionTemplate{
+        final BigInteger id;
+        final int argCount;
+
+        FunctionDefinition(BigInteger id, int argCount) {
+            this.id = id;
+            this.argCount = argCount;
+        }
+
+        @Override
+        public Action create(BitRandomAccessStream code, long start, long end, Context context,
+                             ExecutionEnvironment executionEnvironment, boolean isTopLayer, boolean skip) {
+            if(!isTopLayer)
+                throw new IllegalStateException("Function Declarations in Brackets are not allowed");
+            return new FunctionDeclaration(id,new Function(context,new Interpreter.CodePosition(code, false, end),argCount));
+        }
+    }
+}
@@ -25,6 +25,11 @@ public class ArgPointer implements ValuePointer {
         this.id = res?BigInteger.valueOf(-2): Constants.BIG_INT_NEG_ONE;
     }
 
+    /**@return id of the Argument, -1 for ARG_COUNT and -2 for RES*/
+    BigInteger getId() {
+        return id;
+    }
+
     @Override
     public MathObject getValue() {
         if(id.compareTo(BigInteger.ZERO)<0){
@@ -1,8 +1,8 @@
 package bsoelch.cnl.interpreter;
 
 abstract class BracketInfo {
-    final protected Context localRoot;
-    final protected Interpreter.CodePosition bracketStart;
+    protected Context localRoot;
+    protected Interpreter.CodePosition bracketStart;
     BracketInfo(Context localRoot, Interpreter.CodePosition bracketStart){
         this.localRoot = localRoot;
         this.bracketStart = bracketStart;
@@ -45,6 +45,14 @@ class CallFunction implements Action {
         throw new IllegalStateException("No Argument required");
     }
 
+    BigInteger getFunctionId() {
+        return fktId;
+    }
+
+    int argCount() {
+        return args.length;
+    }
+
     public FunctionContext getDeclarationEnvironment() {
         return env.getFunction(fktId).declarationEnvironment;
     }
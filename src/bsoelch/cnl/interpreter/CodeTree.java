@@ -0,0 +1,681 @@
+package bsoelch.cnl.interpreter;
+
+import bsoelch.cnl.BitRandomAccessStream;
+import bsoelch.cnl.math.LambdaExpression;
+import bsoelch.cnl.math.MathObject;
+import bsoelch.cnl.math.NumericValue;
+import bsoelch.cnl.math.Real;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+
+import static bsoelch.cnl.Constants.*;
+
+/**Tree representation of a CNL program,
+ * the code is parsed once into statements and expressions with resolved brackets and argument counts
+ * which are then evaluated recursively.<br>
+ * Alternative to the step-wise execution in {@link Interpreter},
+ * the argument and store semantics are the same as in the action stack of the Interpreter.
+ * RunIn and Import are not supported*/
+class CodeTree {
+    private static final int NEXT=0,BREAK=1,EXIT=2;
+
+    /**Statement at root-level of a code block*/
+    private abstract class Statement{
+        /**text of the first line of this statement (used for error messages)*/
+        final String line;
+        Statement(String line) {
+            this.line = line;
+        }
+        /**@return NEXT, BREAK or EXIT*/
+        abstract int execute(Context context) throws IOException;
+    }
+    private abstract class Expression{
+        abstract ValuePointer evaluate(Context context) throws IOException;
+    }
+
+    private final ExecutionEnvironment exEnv;
+    private final Statement[] root;
+
+    //state of the execution
+    private long actionCount;
+    private String currentLine;
+    private final ArrayDeque<String> callStack=new ArrayDeque<>();
+
+    private CodeTree(ExecutionEnvironment exEnv, Parser parser) throws IOException {
+        this.exEnv = exEnv;
+        parser.tree=this;
+        ArrayList<Statement> code=new ArrayList<>();
+        Action end=parser.parseBlock(code,parser.parseRoot,true,false);
+        if(end!=Translator.EOF)
+            throw new IllegalStateException("Unexpected end of bracket: "+end.stringRepresentation());
+        root=code.toArray(new Statement[0]);
+    }
+
+    /**parses the remaining code in code into a CodeTree
+     * @param code code-stream, positioned after the file-header
+     * @param parseRoot context that is used while parsing the code,
+     *                  should have the same arguments as the context the code will run in
+     * @throws IllegalStateException if the code cannot be represented as a CodeTree*/
+    static CodeTree compile(BitRandomAccessStream code, boolean isScript, Context parseRoot, ExecutionEnvironment exEnv) throws IOException {
+        return new CodeTree(exEnv, new Parser(code, isScript, parseRoot, exEnv));
+    }
+
+    /**runs this code in the given context*/
+    void run(Context context) throws IOException {
+        execute(root,context);
+    }
+
+    /**number of actions executed by this CodeTree,
+     * counted in the same way as in the step-wise execution*/
+    long actionCount() {
+        return actionCount;
+    }
+
+    Iterator<String> lines(){
+        return new Iterator<String>() {
+            final Iterator<String> itr=callStack.descendingIterator();
+            boolean first=true;
+            @Override
+            public boolean hasNext() {
+                return first||itr.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if(first){
+                    first=false;
+                    return currentLine;
+                }else{
+                    return itr.next();
+                }
+            }
+        };
+    }
+
+    private int execute(Statement[] block, Context context) throws IOException {
+        int state;
+        for(Statement s:block){
+            currentLine=s.line;
+            state=s.execute(context);
+            if(state!=NEXT)
+                return state;
+        }
+        return NEXT;
+    }
+
+    private static boolean isZero(ValuePointer value){
+        return value.getValue().equals(Real.Int.ZERO);
+    }
+
+    private class ExpressionStatement extends Statement{
+        final Expression expression;
+        ExpressionStatement(String line, Expression expression) {
+            super(line);
+            this.expression = expression;
+        }
+
+        @Override
+        int execute(Context context) throws IOException {
+            context.setRes(expression.evaluate(context).getValue());
+            return NEXT;
+        }
+    }
+    private class IfStatement extends Statement{
+        /**true if the branch is executed on zero ([! and |!)*/
+        final boolean[] isEq;
+        final Expression[] conditions;
+        final Statement[][] branches;
+        /**else branch, may be null*/
+        final Statement[] elseBranch;
+
+        IfStatement(String line, boolean[] isEq, Expression[] conditions, Statement[][] branches, Statement[] elseBranch) {
+            super(line);
+            this.isEq = isEq;
+            this.conditions = conditions;
+            this.branches = branches;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        int execute(Context context) throws IOException {
+            actionCount++;
+            for(int i=0;i<conditions.length;i++){
+                if(isZero(conditions[i].evaluate(context))==isEq[i]){
+                    int state=CodeTree.this.execute(branches[i],context);
+                    if(state!=NEXT)
+                        return state;
+                    actionCount++;//next ELIF,ELSE or END
+                    return NEXT;
+                }
+            }
+            if(elseBranch!=null){
+                int state=CodeTree.this.execute(elseBranch,context);
+                if(state!=NEXT)
+                    return state;
+                actionCount++;//END
+            }
+            return NEXT;
+        }
+    }
+    private class WhileStatement extends Statement{
+        final boolean isEq;
+        final Expression condition;
+        final Statement[] body;
+
+        WhileStatement(String line, boolean isEq, Expression condition, Statement[] body) {
+            super(line);
+            this.isEq = isEq;
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        int execute(Context context) throws IOException {
+            while(true){
+                actionCount++;
+                currentLine=line;
+                if(isZero(condition.evaluate(context))!=isEq)
+                    return NEXT;
+                int state=CodeTree.this.execute(body,context);
+                if(state==BREAK){
+                    return NEXT;
+                }else if(state!=NEXT){
+                    return state;
+                }
+                actionCount++;//END
+            }
+        }
+    }
+    private class DoStatement extends Statement{
+        final Statement[] body;
+        /**condition of the DO-WHILE loop, null for DO ... END*/
+        final Expression condition;
+        final boolean isEq;
+        final String endLine;
+
+        DoStatement(String line, Statement[] body, Expression condition, boolean isEq, String endLine) {
+            super(line);
+            this.body = body;
+            this.condition = condition;
+            this.isEq = isEq;
+            this.endLine = endLine;
+        }
+
+        @Override
+        int execute(Context context) throws IOException {
+            actionCount++;
+            while(true){
+                int state=CodeTree.this.execute(body,context);
+                currentLine=endLine;
+                if(state==BREAK){
+                    if(condition!=null){//BREAK jumps directly behind the end of the loop
+                        context.setRes(condition.evaluate(context).getValue());
+                    }
+                    return NEXT;
+                }else if(state!=NEXT){
+                    return state;
+                }
+                actionCount++;//END
+                if(condition==null||isZero(condition.evaluate(context))!=isEq)
+                    return NEXT;
+            }
+        }
+    }
+    private class BreakStatement extends Statement{
+        BreakStatement(String line) {
+            super(line);
+        }
+
+        @Override
+        int execute(Context context) {
+            actionCount++;
+            return BREAK;
+        }
+    }
+    private class ExitStatement extends Statement{
+        ExitStatement(String line) {
+            super(line);
+        }
+
+        @Override
+        int execute(Context context) {
+            return EXIT;
+        }
+    }
+    private class FunctionDeclarationStatement extends Statement{
+        final BigInteger id;
+        final int argCount;
+        final Interpreter.CodePosition start;
+        Statement[] body;
+
+        FunctionDeclarationStatement(String line, FunctionDeclaration declaration) {
+            super(line);
+            this.id = declaration.fktId;
+            this.argCount = declaration.function.argCount;
+            this.start = declaration.function.start;
+        }
+
+        @Override
+        int execute(Context context) {
+            actionCount++;
+            context.putFunction(id,new Function(context,start,argCount));
+            return NEXT;
+        }
+    }
+
+    private class Value extends Expression{
+        final ValuePointer value;
+        Value(ValuePointer value) {
+            this.value = value;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) {
+            actionCount++;
+            return value;
+        }
+    }
+    private class Arg extends Expression{
+        /**id of the argument or -1 for ARG_COUNT and -2 for RES*/
+        final BigInteger id;
+        Arg(BigInteger id) {
+            this.id = id;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) {
+            actionCount++;
+            if(id.signum()<0){
+                return id.equals(BIG_INT_NEG_ONE)?context.COUNT:context.RES;
+            }else{
+                return context.argPointer(id);
+            }
+        }
+    }
+    private class Var extends Expression{
+        /**id of the var or null for dynamic vars*/
+        final MathObject id;
+        final int slot;
+        final boolean forceWrite;
+        /**expression for the id of dynamic vars*/
+        final Expression idExpression;
+        /**new value of the var, may be null*/
+        final Expression value;
+
+        //pointer to static vars, cached to save memory
+        private Context cachedContext;
+        private VarPointer cachedPointer;
+
+        Var(MathObject id, boolean forceWrite, Expression idExpression, Expression value) {
+            this.id = id;
+            this.slot = id instanceof NumericValue?VarFrame.slot(((NumericValue) id).numericValue()):-1;
+            this.forceWrite = forceWrite;
+            this.idExpression = idExpression;
+            this.value = value;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) throws IOException {
+            actionCount++;
+            VarPointer pointer;
+            if(idExpression!=null){
+                pointer=new VarPointer(context,idExpression.evaluate(context).getValue(),forceWrite);
+            }else if(cachedContext==context){
+                pointer=cachedPointer;
+            }else{
+                pointer=new VarPointer(context,id,slot,forceWrite);
+                cachedPointer=pointer;
+                cachedContext=context;
+            }
+            if(value!=null){
+                pointer.setValue(value.evaluate(context).getValue());
+            }
+            return pointer;
+        }
+    }
+    private class OperatorCall extends Expression{
+        final Operators.OperatorInfo operator;
+        final int flags;
+        final Expression[] args;
+
+        OperatorCall(Operators.OperatorInfo operator, int flags, Expression[] args) {
+            this.operator = operator;
+            this.flags = flags;
+            this.args = args;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) throws IOException {
+            actionCount++;
+            ValuePointer[] values=new ValuePointer[args.length];
+            for(int i=0;i<args.length;i++){
+                values[i]=args[i].evaluate(context);
+            }
+            return Operator.preformOperation(operator,exEnv,values,flags);
+        }
+    }
+    private class FunctionCall extends Expression{
+        final BigInteger id;
+        final FunctionDeclarationStatement function;
+        final Expression[] args;
+
+        FunctionCall(BigInteger id, FunctionDeclarationStatement function, Expression[] args) {
+            this.id = id;
+            this.function = function;
+            this.args = args;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) throws IOException {
+            actionCount++;
+            ValuePointer[] values=new ValuePointer[args.length];
+            for(int i=0;i<args.length;i++){
+                values[i]=args[i].evaluate(context);
+            }
+            FunctionContext target=context.getFunction(id).declarationEnvironment;
+            target.reset(new Context.ArgumentData(values));
+            String callLine=currentLine;
+            callStack.addLast(callLine);
+            if(CodeTree.this.execute(function.body,target)==BREAK)
+                throw new RuntimeException("BREAK outside of loop");
+            actionCount++;//END or EXIT
+            callStack.removeLast();
+            currentLine=callLine;
+            return Translator.wrap(target.getRes());
+        }
+    }
+    private class Lambda extends Expression{
+        final BindLambda lambda;
+        final Expression arg;
+
+        Lambda(BindLambda lambda, Expression arg) {
+            this.lambda = lambda;
+            this.arg = arg;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) throws IOException {
+            actionCount++;
+            return Translator.wrap(LambdaExpression.from(arg.evaluate(context).getValue(),lambda.vars));
+        }
+    }
+    private class In extends Expression{
+        final Input input;
+        In(Input input) {
+            this.input = input;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) {
+            actionCount++;
+            return input.read();
+        }
+    }
+    private class Out extends Expression{
+        final Output output;
+        final Expression value;
+        /**precision of approximate number outputs, null for all other outputs*/
+        final Expression precision;
+
+        Out(Output output, Expression value, Expression precision) {
+            this.output = output;
+            this.value = value;
+            this.precision = precision;
+        }
+
+        @Override
+        ValuePointer evaluate(Context context) throws IOException {
+            actionCount++;
+            ValuePointer v=value.evaluate(context);
+            Real p=precision==null?output.precision:
+                    precision.evaluate(context).getValue().numericValue().realPart();
+            return output.write(v,p);
+        }
+    }
+
+    /**Parser for the action stream of a code-file*/
+    private static class Parser{
+        final BitRandomAccessStream code;
+        final boolean isScript;
+        final Context parseRoot;
+        final ExecutionEnvironment exEnv;
+
+        /**text of the current line*/
+        final StringBuilder line=new StringBuilder();
+        /**function declaration of all parsed functions*/
+        final IdentityHashMap<Function,FunctionDeclarationStatement> functions=new IdentityHashMap<>();
+        Action peeked;
+        CodeTree tree;
+
+        Parser(BitRandomAccessStream code, boolean isScript, Context parseRoot, ExecutionEnvironment exEnv) {
+            this.code = code;
+            this.isScript = isScript;
+            this.parseRoot = parseRoot;
+            this.exEnv = exEnv;
+        }
+
+        Action next(Context context, boolean isTopLayer) throws IOException {
+            Action a;
+            if(peeked!=null){
+                a=peeked;
+                peeked=null;
+            }else if(isScript){
+                a=Translator.nextAction(code.reader(),code,context,exEnv,isTopLayer,false);
+            }else{
+                a=Translator.nextAction(code,context,exEnv,isTopLayer,false);
+            }
+            line.append(a.stringRepresentation()).append(' ');
+            return a;
+        }
+        Action peek(Context context, boolean isTopLayer) throws IOException {
+            if(peeked==null){
+                if(isScript){
+                    peeked=Translator.nextAction(code.reader(),code,context,exEnv,isTopLayer,false);
+                }else{
+                    peeked=Translator.nextAction(code,context,exEnv,isTopLayer,false);
+                }
+            }
+            return peeked;
+        }
+
+        /**parses statements until the end of the current block
+         * @return the Action that ended the block: EOF or a BracketDeclaration*/
+        Action parseBlock(ArrayList<Statement> target, Context context, boolean isTopLayer, boolean inLoop) throws IOException {
+            while(true){
+                line.setLength(0);
+                Action a=next(context,isTopLayer);
+                if(a==Translator.EOF){
+                    return a;
+                }else if(a==Translator.EXIT){
+                    target.add(tree().new ExitStatement(line.toString()));
+                }else if(a instanceof BracketDeclaration){
+                    BracketDeclaration bracket=(BracketDeclaration)a;
+                    switch (bracket.type){
+                        case BRACKET_FLAG_IF_EQ:
+                        case BRACKET_FLAG_IF_NE:
+                            target.add(parseIf(bracket,context,inLoop));
+                            break;
+                        case BRACKET_FLAG_WHILE_EQ:
+                        case BRACKET_FLAG_WHILE_NE:{
+                            Expression condition=argument(stackOf(a),context);
+                            String head=line.toString();
+                            ArrayList<Statement> body=new ArrayList<>();
+                            Action end=parseBlock(body,context,false,true);
+                            if(!(end instanceof BracketDeclaration&&((BracketDeclaration) end).type==BRACKET_FLAG_END))
+                                throw new IllegalStateException("Unexpected end of WHILE-loop: "+end.stringRepresentation());
+                            target.add(tree().new WhileStatement(head,bracket.type==BRACKET_FLAG_WHILE_EQ,condition,
+                                    body.toArray(new Statement[0])));
+                        }break;
+                        case BRACKET_FLAG_DO:{
+                            String head=line.toString();
+                            ArrayList<Statement> body=new ArrayList<>();
+                            Action end=parseBlock(body,context,false,true);
+                            if(!(end instanceof BracketDeclaration))
+                                throw new IllegalStateException("Unfinished DO-loop");
+                            line.setLength(0);
+                            line.append(end.stringRepresentation()).append(' ');
+                            Expression condition;
+                            switch (((BracketDeclaration) end).type){
+                                case BRACKET_FLAG_END:
+                                    condition=null;
+                                    break;
+                                case BRACKET_FLAG_END_WHILE_EQ:
+                                case BRACKET_FLAG_END_WHILE_NE:
+                                    condition=argument(stackOf(end),context);
+                                    break;
+                                default:
+                                    throw new IllegalStateException("Unexpected end of DO-loop: "+end.stringRepresentation());
+                            }
+                            target.add(tree().new DoStatement(head,body.toArray(new Statement[0]),condition,
+                                    ((BracketDeclaration) end).type==BRACKET_FLAG_END_WHILE_EQ,line.toString()));
+                        }break;
+                        case BRACKET_FLAG_BREAK:
+                            if(!inLoop)
+                                throw new IllegalStateException("BREAK statement outside of loop");
+                            target.add(tree().new BreakStatement(line.toString()));
+                            break;
+                        default://ELSE, ELIF, END
+                            return a;
+                    }
+                }else if(a instanceof FunctionDeclaration){
+                    FunctionDeclaration declaration=(FunctionDeclaration)a;
+                    context.putFunction(declaration.fktId,declaration.function);
+                    FunctionDeclarationStatement statement=tree().new FunctionDeclarationStatement(line.toString(),declaration);
+                    functions.put(declaration.function,statement);
+                    ArrayList<Statement> body=new ArrayList<>();
+                    Action end=parseBlock(body,declaration.function.declarationEnvironment,false,false);
+                    if(end==Translator.EOF)
+                        throw new IllegalStateException("Unfinished function");
+                    if(((BracketDeclaration) end).type!=BRACKET_FLAG_END)
+                        throw new IllegalStateException("Unexpected end of function: "+end.stringRepresentation());
+                    statement.body=body.toArray(new Statement[0]);
+                    target.add(statement);
+                }else{
+                    Expression expression=expression(a,new ArrayDeque<>(),context);
+                    target.add(tree().new ExpressionStatement(line.toString(),expression));
+                }
+            }
+        }
+
+        private Statement parseIf(BracketDeclaration start, Context context, boolean inLoop) throws IOException {
+            ArrayList<Boolean> isEq=new ArrayList<>();
+            ArrayList<Expression> conditions=new ArrayList<>();
+            ArrayList<Statement[]> branches=new ArrayList<>();
+            Statement[] elseBranch=null;
+            String head=null;
+            BracketDeclaration branch=start;
+            while(true){
+                isEq.add(branch.type==BRACKET_FLAG_IF_EQ||branch.type==BRACKET_FLAG_ELIF_EQ);
+                conditions.add(argument(stackOf(branch),context));
+                if(head==null)
+                    head=line.toString();
+                ArrayList<Statement> body=new ArrayList<>();
+                Action end=parseBlock(body,context,false,inLoop);
+                branches.add(body.toArray(new Statement[0]));
+                if(!(end instanceof BracketDeclaration))
+                    throw new IllegalStateException("Unfinished IF-statement");
+                branch=(BracketDeclaration) end;
+                if(branch.type==BRACKET_FLAG_ELSE){
+                    body=new ArrayList<>();
+                    end=parseBlock(body,context,false,inLoop);
+                    elseBranch=body.toArray(new Statement[0]);
+                    if(!(end instanceof BracketDeclaration&&((BracketDeclaration) end).type==BRACKET_FLAG_END))
+                        throw new IllegalStateException("Unexpected end of ELSE-branch: "+end.stringRepresentation());
+                    break;
+                }else if(branch.type==BRACKET_FLAG_END){
+                    break;
+                }else if(branch.type!=BRACKET_FLAG_ELIF_EQ&&branch.type!=BRACKET_FLAG_ELIF_NE){
+                    throw new IllegalStateException("Unexpected end of IF-statement: "+end.stringRepresentation());
+                }
+                line.setLength(0);
+                line.append(branch.stringRepresentation()).append(' ');
+            }
+            boolean[] eq=new boolean[isEq.size()];
+            for(int i=0;i<eq.length;i++)
+                eq[i]=isEq.get(i);
+            return tree().new IfStatement(head,eq,conditions.toArray(new Expression[0]),
+                    branches.toArray(new Statement[0][]),elseBranch);
+        }
+
+        private static ArrayDeque<Action> stackOf(Action a){
+            ArrayDeque<Action> stack=new ArrayDeque<>();
+            stack.add(a);
+            return stack;
+        }
+
+        /**parses the next action as argument of the last element of stack*/
+        private Expression argument(ArrayDeque<Action> stack, Context context) throws IOException {
+            Action a=next(context,false);
+            if(a==Translator.EOF||a==Translator.EXIT){
+                throw new IllegalStateException("Missing Argument");
+            }
+            return expression(a,stack,context);
+        }
+
+        private Expression expression(Action a, ArrayDeque<Action> stack, Context context) throws IOException {
+            stack.addLast(a);
+            try{
+                if(a instanceof ValuePointerImpl){
+                    return tree().new Value((ValuePointer) a);
+                }else if(a instanceof ArgPointer){
+                    return tree().new Arg(((ArgPointer) a).getId());
+                }else if(a instanceof VarPointer){
+                    VarPointer var=(VarPointer)a;
+                    Expression id=null,value=null;
+                    if(var.getVarId()==null){
+                        id=argument(stack,context);
+                    }
+                    if(var.isForceWrite()){
+                        value=argument(stack,context);
+                    }else if((Interpreter.stackFlags(stack)&Interpreter.FLAG_ROOT)==Interpreter.FLAG_ROOT){
+                        Action next=peek(context,false);
+                        if(next!=Translator.EOF&&next!=Translator.EXIT)
+                            value=argument(stack,context);
+                    }
+                    return tree().new Var(var.getVarId(),var.isForceWrite(),id,value);
+                }else if(a instanceof Operator){
+                    Operator operator=(Operator)a;
+                    Expression[] args=new Expression[operator.args.length];
+                    for(int i=0;i<args.length;i++){
+                        args[i]=argument(stack,context);
+                    }
+                    return tree().new OperatorCall(operator.operatorInfo,Interpreter.stackFlags(stack),args);
+                }else if(a instanceof CallFunction){
+                    CallFunction call=(CallFunction)a;
+                    FunctionDeclarationStatement function=functions.get(context.getFunction(call.getFunctionId()));
+                    if(function==null)
+                        throw new IllegalStateException("Unknown function: "+call.getFunctionId());
+                    Expression[] args=new Expression[call.argCount()];
+                    for(int i=0;i<args.length;i++){
+                        args[i]=argument(stack,context);
+                    }
+                    return tree().new FunctionCall(call.getFunctionId(),function,args);
+                }else if(a instanceof BindLambda){
+                    return tree().new Lambda((BindLambda) a,argument(stack,context));
+                }else if(a instanceof Input){
+                    return tree().new In((Input) a);
+                }else if(a instanceof Output){
+                    Output output=(Output)a;
+                    Expression value=argument(stack,context);
+                    Expression precision=null;
+                    if(output.isNumber&&output.precision==null){
+                        precision=argument(stack,context);
+                    }
+                    return tree().new Out(output,value,precision);
+                }else if(a instanceof RunIn||a instanceof Import){
+                    throw new UnsupportedOperationException(a.stringRepresentation()+" is not supported in CodeTrees");
+                }else{
+                    throw new IllegalStateException("Unexpected Action: "+a.stringRepresentation());
+                }
+            }finally {
+                stack.removeLast();
+            }
+        }
+
+        private CodeTree tree(){
+            return tree;
+        }
+    }
+}
@@ -55,6 +55,14 @@ public abstract class Context implements Action {
     }
 
     abstract void putVar(NumericValue id, MathObject value);
+
+    /**@param slot the slot of the variable
+     * @return Variable in the given slot (non-null)
+     * @see VarFrame#slot(NumericValue) */
+    abstract MathObject getVar(int slot);
+    /**@param slot the slot of the variable
+     * @see VarFrame#slot(NumericValue) */
+    abstract void putVar(int slot, MathObject value);
     final void putVar(MathObject id, MathObject value) {
         if(id instanceof NumericValue){
             putVar((NumericValue) id,value);
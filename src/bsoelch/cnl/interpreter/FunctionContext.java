@@ -12,7 +12,7 @@ public class FunctionContext extends Context{
     final Context parent;
 
     final HashMap<BigInteger,FunctionContext> children=new HashMap<>();
-    final HashMap<NumericValue,MathObject> vars=new HashMap<>();
+    final VarFrame vars=new VarFrame();
 
 
     public FunctionContext(Context parent, ArgumentData fData) {
@@ -50,6 +50,19 @@ public class FunctionContext extends Context{
         vars.put(id,value);
     }
 
+    @Override
+    MathObject getVar(int slot) {
+        MathObject value = vars.get(slot);
+        if (value == null)
+            return parent.getVar(slot);//read values from parent layer if not assigned
+        return value;
+    }
+
+    @Override
+    void putVar(int slot, MathObject value) {
+        vars.put(slot,value);
+    }
+
     @Override
     public Function getFunction(BigInteger id) {
         return parent.getFunction(id);
@@ -4,16 +4,39 @@ import bsoelch.cnl.math.MathObject;
 
 import java.util.ArrayDeque;
 
+/**call frame of a running function, frames are reused by the Interpreter after the function returned,
+ * together with their action stack and line-buffer*/
 class FunctionInfo extends BracketInfo {
 
+    /**actionStack and line of the calling code*/
     ArrayDeque<Action> prevStack;
-    final String currentLine;
+    ActionLine prevLine;
+    /**actionStack and line of the function body*/
+    final ArrayDeque<Action> stack=new ArrayDeque<>();
+    final ActionLine line=new ActionLine();
 
-    FunctionInfo(FunctionContext context, Interpreter.CodePosition prevPos, ArrayDeque<Action> prevStack, Context.ArgumentData args, String currentLine) {
-        super(context,prevPos);
+    FunctionInfo() {
+        super(null,null);
+    }
+
+    /**initializes this frame for a new call of the function with the given context
+     * @return this frame*/
+    FunctionInfo init(FunctionContext context, Interpreter.CodePosition prevPos, ArrayDeque<Action> prevStack, Context.ArgumentData args, ActionLine prevLine) {
+        localRoot=context;
+        bracketStart=prevPos;
         context.reset(args);
         this.prevStack = prevStack;
-        this.currentLine = currentLine;
+        this.prevLine = prevLine;
+        stack.clear();
+        line.clear();
+        return this;
+    }
+    /**removes all references to the calling code, so that this frame can be reused*/
+    void release(){
+        localRoot=null;
+        bracketStart=null;
+        prevStack=null;
+        prevLine=null;
     }
 
     MathObject getRes(){
@@ -1,6 +1,6 @@
 package bsoelch.cnl.interpreter;
 
-import bsoelch.cnl.BitRandomAccessFile;
+import bsoelch.cnl.BitRandomAccessBuffer;
 import bsoelch.cnl.BitRandomAccessStream;
 import bsoelch.cnl.Main;
 import bsoelch.cnl.math.MathObject;
@@ -35,6 +35,11 @@ public class Interpreter implements Closeable {
             this.position = file==null?-1:file.bitPos();
             this.isScript = isScript;
         }
+        CodePosition(BitRandomAccessStream file, boolean isScript, long position) {
+            this.file = file;
+            this.position = position;
+            this.isScript = isScript;
+        }
 
         /**checks if this CodePosition points to the same position as other<br>
          * !!! this method return false if one of the COdePositions is invalid,
@@ -74,39 +79,51 @@ public class Interpreter implements Closeable {
     final private ArrayDeque<BracketInfo> brackets=new ArrayDeque<>();
     /**stack containing all current function calls*/
     final private ArrayDeque<FunctionInfo> callStack=new ArrayDeque<>();
+    /**frames of returned functions, that can be reused for the next function call*/
+    final private ArrayDeque<FunctionInfo> framePool=new ArrayDeque<>();
     /**stack for the return positions of all open imports*/
     private final ArrayDeque<ImportReturnPosition> importReturnStack=new ArrayDeque<>();
 
     private final HashSet<String> importDejaVu=new HashSet<>();
     private final HashSet<Context> importEnvironments=new HashSet<>();
 
+    /**decoded actions of all binary code-files used by this interpreter*/
+    private final ActionCache actionCache=new ActionCache();
+
+    /**CodeTree of the running code, null if the code is executed step-wise*/
+    private CodeTree codeTree;
+
     private ArrayDeque<Action> actionStack=new ArrayDeque<>();
-    private StringBuilder currentLine=new StringBuilder();
-    private String prevLine;
+    private ActionLine currentLine=new ActionLine();
+    /**actions of the last non-empty line, null if there was no previous line*/
+    private ActionLine prevLine;
 
-    /**@param codeFile sourceFile for the code
+    /**@param codeFile sourceFile for the code, CNL-assembly is compiled to binary code (in memory) before it is executed
      * @param args program arguments, may be null
      * @param forceRunLibs if true the program will run libraries as executables without arguments*/
-    public Interpreter(File codeFile, MathObject[] args, boolean forceRunLibs) throws IOException {
+    public Interpreter(File codeFile, MathObject[] args, boolean forceRunLibs) throws IOException, SyntaxError, CNL_RuntimeException {
         this(args, true, codeFile, forceRunLibs);
     }
     /**Internal constructor that allows the creation of Interpreter instances which are
-     * not attached to a BitRandomAccessFile
+     * not attached to a code-file
      * @param args program arguments, may be null
      * @param useCode if false the code in codeFile is not ignored,
      *                the codeFile is still used to find the local directory
      * @param codeFile sourceFile for the code, is assumed to be non-null
      * @param forceRunLibs if true the program will run libraries as executables without arguments
      * */
-    Interpreter(MathObject[] args, boolean useCode, File codeFile, boolean forceRunLibs) throws IOException {
+    Interpreter(MathObject[] args, boolean useCode, File codeFile, boolean forceRunLibs) throws IOException, SyntaxError, CNL_RuntimeException {
         this.codeDir = codeFile.getParentFile();
         if(useCode){
-            this.code =new BitRandomAccessFile(codeFile,"r");
+            this.code =BitRandomAccessBuffer.open(codeFile);
             Translator.FileHeader header=Translator.readCodeFileHeader(code);
             if(header.type==Translator.FILE_TYPE_INVALID)
                 throw new IOException(codeFile+" is no valid code-file");
-            if((header.type&Translator.FILE_TYPE_ASSEMBLY)!=0)
-                isScript=true;
+            if((header.type&Translator.FILE_TYPE_ASSEMBLY)!=0){//compile assembly before execution
+                code.close();
+                code=Translator.compileToMemory(codeFile);
+                header=Translator.readCodeFileHeader(code);
+            }
             if((header.type&Translator.FILE_TYPE_EXECUTABLE)!=0){
                 int c = header.codeVersion.compareTo(CODE_VERSION);
                 if(c<0){
@@ -123,6 +140,8 @@ public class Interpreter implements Closeable {
             }else{
                 args=new MathObject[0];
             }
+            if(!isScript)
+                actionCache.indexBrackets(code);
         }
         root=new RootContext(new Context.ArgumentData(args));
         envStack.add(root);
@@ -151,6 +170,8 @@ public class Interpreter implements Closeable {
     }
 
     Iterator<String> lines(){
+        if(codeTree!=null)
+            return codeTree.lines();
         return new Iterator<String>() {
             final Iterator<FunctionInfo> itr=callStack.descendingIterator();
             boolean first=true;
@@ -163,9 +184,9 @@ public class Interpreter implements Closeable {
             public String next() {
                 if(first){
                     first=false;
-                    return currentLine.length()==0?prevLine:currentLine.toString();
+                    return currentLine.isEmpty()?prevLine==null?null:prevLine.toString():currentLine.toString();
                 }else{
-                    return itr.next().currentLine;
+                    return itr.next().prevLine.toString();
                 }
             }
         };
@@ -187,6 +208,29 @@ public class Interpreter implements Closeable {
         return envStack.getLast().getRes();
     }
 
+    /**runs the code using a {@link CodeTree},
+     * falls back to step-wise execution if the code cannot be represented as a CodeTree*/
+    public MathObject runCompiled() throws IOException, SyntaxError, CNL_RuntimeException {
+        long start=code.bitPos();
+        try {
+            codeTree=CodeTree.compile(code,isScript,new RootContext(root.getArgs()),exEnv);
+        }catch (IOException|IllegalArgumentException|IllegalStateException|UnsupportedOperationException|IndexOutOfBoundsException|ArithmeticException e){
+            //unsupported, invalid or truncated code -> use step-wise execution
+            code.seek(start);
+            return run();
+        }
+        try {
+            codeTree.run(root);
+        }catch (IllegalArgumentException|IllegalStateException| IndexOutOfBoundsException e){
+            throw new SyntaxError(this,e);
+        }catch (ArithmeticException e){
+            throw new CNL_RuntimeException(this,e);
+        }
+        Main.executeFinished(codeTree.actionCount(), true);
+        close();
+        return root.getRes();
+    }
+
     void flatStep() throws IOException, SyntaxError, CNL_RuntimeException {
         doStep(false);
     }
@@ -196,7 +240,7 @@ public class Interpreter implements Closeable {
         if(isScript){
             a= Translator.nextAction(code.reader(),code, programEnvironment(), executionEnvironment(), isTopLayer(), false);
         }else{
-            a= Translator.nextAction(code, programEnvironment(), executionEnvironment(), isTopLayer(), false);
+            a= actionCache.nextAction(code, programEnvironment(), executionEnvironment(), isTopLayer(), false);
         }
         try {
             return stepInternal(a, doBranching);
@@ -209,10 +253,12 @@ public class Interpreter implements Closeable {
 
     boolean stepInternal(Action a,boolean doBranching) throws IOException, SyntaxError {
         if(actionStack.isEmpty()) {//clear line
-            prevLine = currentLine.toString();
-            currentLine.setLength(0);
+            if(prevLine==null)
+                prevLine=new ActionLine();
+            prevLine.set(currentLine);
+            currentLine.clear();
         }
-        currentLine.append(a.stringRepresentation()).append(' ');
+        currentLine.add(a);
         if(a == Translator.EOF|| a == Translator.EXIT){
             return exit(doBranching);
         }else if(a instanceof RunIn){//Unwrap RunIn
@@ -233,7 +279,7 @@ public class Interpreter implements Closeable {
                                 case BRACKET_FLAG_ELIF_NE: {
                                     ((LoopInfo) top).state = ((BracketDeclaration) a).type;
                                     if(doBranching) {
-                                        skipTo(SKIP_END_IF, 1);
+                                        skipTo(SKIP_END_IF, 1, ((BracketDeclaration) a).declarationStart, false);
                                         removeBracket();
                                         return true;
                                     }else if(((BracketDeclaration) a).type==BRACKET_FLAG_ELSE){
@@ -291,7 +337,10 @@ public class Interpreter implements Closeable {
                                 ||(((LoopInfo) top).state==BRACKET_FLAG_WHILE_NE)||(((LoopInfo) top).state==BRACKET_FLAG_DO))));
                         if(doBranching){
                             brackets.add(top);//re-add loop-environment that is ended by break
-                            skipTo(SKIP_LOOP,count);
+                            boolean inFunction=false;
+                            for(BracketInfo b:reconstruct)
+                                inFunction|=b instanceof FunctionInfo;
+                            skipTo(SKIP_LOOP,count,inFunction?null:top.bracketStart,((LoopInfo) top).state==BRACKET_FLAG_DO);
                         }else{//don't break in flat mode
                             brackets.addAll(reconstruct);//reset state of brackets
                         }
@@ -309,15 +358,25 @@ public class Interpreter implements Closeable {
 
     private final static int SKIP_LOOP=1,SKIP_IF=2,SKIP_END_IF=3,SKIP_FUNCTION=5;
 
-    /**Skips to the next element in the structure given by {@code type}*/
-    private void skipTo(int stepType, int openBrackets) throws IOException, SyntaxError {
+    /**Skips to the next element in the structure given by {@code type}
+     * @param skipped start of the outermost skipped bracket, if non-null and the code is indexed
+     *                the code is moved directly to the ELIF/ELSE/END terminating the skip
+     * @param skippedBody true if skipped is the start of a function body or DO-loop body*/
+    private void skipTo(int stepType, int openBrackets, CodePosition skipped, boolean skippedBody) throws IOException, SyntaxError {
         int bracketCount=openBrackets;
+        if(skipped!=null&&!isScript&&skipped.file.getSourceId().equals(code.getSourceId())){
+            long target=actionCache.skipTarget(code,skipped.position,skippedBody,stepType==SKIP_IF);
+            if(target>=0){
+                code.seek(target);
+                bracketCount=1;
+            }
+        }
         Action a;
         while (bracketCount>0){
             if(isScript){
                 a= Translator.nextAction(code.reader(),code,envStack.getLast(), exEnv,brackets.isEmpty(), true);
             }else{
-                a= Translator.nextAction(code,envStack.getLast(), exEnv,brackets.isEmpty(), true);
+                a= actionCache.nextAction(code,envStack.getLast(), exEnv,brackets.isEmpty(), true);
             }
             if(a== Translator.EOF){//ignore EXIT statements
                 throw new SyntaxError(this,"Unfinished Loop");
@@ -391,11 +450,14 @@ public class Interpreter implements Closeable {
             env = removeBracket();
         }
         actionStack= function.prevStack;//exit function
-        currentLine = new StringBuilder(function.currentLine);
+        currentLine = function.prevLine;
         if(doBranching) {
             goTo(function.bracketStart);
         }
-        addToStack(Translator.wrap(function.getRes()), doBranching);
+        MathObject res=function.getRes();
+        function.release();
+        framePool.addLast(function);
+        addToStack(Translator.wrap(res), doBranching);
     }
 
 
@@ -490,13 +552,13 @@ public class Interpreter implements Closeable {
             }else if(last instanceof CallFunction){
                 if(forceEvaluate)
                     throw new SyntaxError(this,"Waiting for Function call");
-                FunctionInfo call = new FunctionInfo(((CallFunction) last).getDeclarationEnvironment(),
-                        new CodePosition(code, isScript), actionStack,new Context.ArgumentData(((CallFunction) last).getArgs()), currentLine.toString());
+                FunctionInfo call = newFrame().init(((CallFunction) last).getDeclarationEnvironment(),
+                        new CodePosition(code, isScript), actionStack,new Context.ArgumentData(((CallFunction) last).getArgs()), currentLine);
                 if(doBranching) {
                     addBracket(call);//add function call to brackets to allow easy management of open structures
                     callStack.addLast(call);
-                    actionStack = new ArrayDeque<>();
-                    currentLine=new StringBuilder();
+                    actionStack = call.stack;
+                    currentLine = call.line;
                     goTo(((CallFunction) last).getFunctionStart());
                     return;
                 }else{
@@ -514,7 +576,7 @@ public class Interpreter implements Closeable {
                         }
                         if(doBranching&&(!((BracketDeclaration) last).param.equals(Real.Int.ZERO))){
                             ensureRoot();
-                            skipTo(SKIP_IF, 1);
+                            skipTo(SKIP_IF, 1, ((BracketDeclaration) last).declarationStart, false);
                             return;
                         }break;
                     case BRACKET_FLAG_IF_NE:
@@ -527,7 +589,7 @@ public class Interpreter implements Closeable {
                         }
                         if(doBranching&&((BracketDeclaration) last).param.equals(Real.Int.ZERO)){
                             ensureRoot();
-                            skipTo(SKIP_IF, 1);
+                            skipTo(SKIP_IF, 1, ((BracketDeclaration) last).declarationStart, false);
                             return;
                         }break;
                     case BRACKET_FLAG_WHILE_EQ:
@@ -538,7 +600,7 @@ public class Interpreter implements Closeable {
                                     ((BracketDeclaration) last).declarationStart, BRACKET_FLAG_WHILE_EQ));
                         }
                         if ((doBranching) && !((BracketDeclaration) last).param.equals(Real.Int.ZERO)) {
-                            skipTo(SKIP_LOOP, 1);
+                            skipTo(SKIP_LOOP, 1, ((BracketDeclaration) last).declarationStart, false);
                             return;
                         }
                         break;
@@ -550,7 +612,7 @@ public class Interpreter implements Closeable {
                                     ((BracketDeclaration) last).declarationStart, BRACKET_FLAG_WHILE_NE));
                         }
                         if ((doBranching) && ((BracketDeclaration) last).param.equals(Real.Int.ZERO)) {
-                            skipTo(SKIP_LOOP, 1);
+                            skipTo(SKIP_LOOP, 1, ((BracketDeclaration) last).declarationStart, false);
                             return;
                         }
                         break;
@@ -585,16 +647,16 @@ public class Interpreter implements Closeable {
                         ,((FunctionDeclaration) last).function);
                 ensureRoot();
                 if(doBranching) {
-                    skipTo(SKIP_FUNCTION, 1);
+                    skipTo(SKIP_FUNCTION, 1, ((FunctionDeclaration) last).function.start, true);
                 }else{
                     ValuePointer[] args=new ValuePointer[((FunctionDeclaration) last).function.argCount];
                     Arrays.fill(args,Translator.ZERO);//Default Value
-                    FunctionInfo call = new FunctionInfo(((FunctionDeclaration) last).function.declarationEnvironment,
-                            new CodePosition(code, isScript), actionStack,new Context.ArgumentData(args), currentLine.toString());
+                    FunctionInfo call = newFrame().init(((FunctionDeclaration) last).function.declarationEnvironment,
+                            new CodePosition(code, isScript), actionStack,new Context.ArgumentData(args), currentLine);
                     addBracket(call);//add function call to brackets to allow easy management of open structures
                     callStack.addLast(call);
-                    actionStack = new ArrayDeque<>();
-                    currentLine=new StringBuilder();
+                    actionStack = call.stack;
+                    currentLine = call.line;
                 }
                 return;
             }else if(last instanceof Import){
@@ -604,13 +666,22 @@ public class Interpreter implements Closeable {
                 envStack.addLast(((Import) last).getTarget());
                 File target=new File(codeDir.getAbsolutePath()+File.separator+((Import) last).getSource());
                 codeDir =target.getParentFile();
-                code =new BitRandomAccessFile(target,"r");
+                code =BitRandomAccessBuffer.open(target);
                 Translator.FileHeader header=Translator.readCodeFileHeader(code);
                 if(header.type==Translator.FILE_TYPE_INVALID){
                     throw new SyntaxError(this,"Invalid import-File: "+target.getAbsolutePath());
                 }else if((header.type&Translator.FILE_TYPE_EXECUTABLE)!=0){
                     throw new SyntaxError(this,"Invalid import-File: "+target.getAbsolutePath()+" cannot import Executables");
                 }else{
+                    if(header.type==Translator.FILE_TYPE_ASSEMBLY&&doBranching){//compile imported assembly before execution
+                        code.close();
+                        try {
+                            code=Translator.compileToMemory(target);
+                        }catch (CNL_RuntimeException e){
+                            throw new SyntaxError(this,"Unable to compile import-File: "+target.getAbsolutePath()+": "+e.getMessage());
+                        }
+                        header=Translator.readCodeFileHeader(code);
+                    }
                     if(header.type==Translator.FILE_TYPE_CODE) {
                         int c = header.codeVersion.compareTo(CODE_VERSION);
                         if (c < 0) {
@@ -623,6 +694,8 @@ public class Interpreter implements Closeable {
                     }
                     isScript=((header.type&Translator.FILE_TYPE_ASSEMBLY)!=0);
                 }
+                if(!isScript)
+                    actionCache.indexBrackets(code);
                 if(!importDejaVu.add(code.getSourceId())) {//check if codeFile is already imported in this direct hierarchy
                     throw new SyntaxError(this,"Cyclic Import in: "+importDejaVu);
                 }
@@ -658,6 +731,12 @@ public class Interpreter implements Closeable {
         return bracket;
     }
 
+    /**@return a reusable frame from the framePool, or a new frame if the pool is empty*/
+    private FunctionInfo newFrame(){
+        FunctionInfo frame=framePool.pollLast();
+        return frame!=null?frame:new FunctionInfo();
+    }
+
     private void addBracket(BracketInfo env) {
         envStack.add(env.getLocalRoot());//add Bracket Root
         brackets.addLast(env);
@@ -692,6 +771,11 @@ public class Interpreter implements Closeable {
     }
 
     private int stackFlags() {
+        return stackFlags(actionStack);
+    }
+
+    /**calculates the flags for the last element of the given action stack*/
+    static int stackFlags(Iterable<Action> actionStack) {
         int flags= FLAG_ROOT,prev= FLAG_ROOT;//addLater? better flag-management
         for(Action a:actionStack){//iterate through elements of actionStack
             prev=flags;
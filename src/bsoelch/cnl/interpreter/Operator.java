@@ -30,6 +30,13 @@ public class Operator implements Action {
     public ValuePointer preformOperation(int flags) {
         if (requiresArg())
             throw new IllegalStateException("Missing Argument for Operator:"+operatorInfo.name);
+        return preformOperation(operatorInfo, env, args, flags);
+    }
+
+    /**Executes the given operator for the given (non-null) arguments,
+     * and stores the result in arg0 if required by the storeMode of the operator
+     * @param flags stackFlags at the position of the operator*/
+    static ValuePointer preformOperation(Operators.OperatorInfo operatorInfo, ExecutionEnvironment env, ValuePointer[] args, int flags) {
         MathObject res;
         MathObject[] values=new MathObject[args.length];
         for(int i=0;i<args.length;i++)
@@ -1,6 +1,7 @@
 package bsoelch.cnl.interpreter;
 
 import bsoelch.cnl.BitRandomAccessStream;
+import bsoelch.cnl.math.MathObject;
 import bsoelch.cnl.math.Real;
 
 import java.io.IOException;
@@ -50,6 +51,12 @@ class Output implements Action {
     ValuePointer write() {
         if (requiresArg())
             throw new IllegalStateException("Argument required");
+        return write(value, precision);
+    }
+
+    /**writes value with the given precision (ignored for string outputs) to the console
+     * @return value*/
+    ValuePointer write(ValuePointer value, Real precision) {
         if (isNumber) {
             switch (type){
                 case OUT_FLAG_FRACTION:{//fraction
@@ -60,16 +67,24 @@ class Output implements Action {
                 }
                 case OUT_FLAG_FIXED_POINT_EXACT:
                 case OUT_FLAG_FIXED_POINT_APPROX:{//fixed Point
-                    System.out.print(value.getValue()
-                            .toStringFixedPoint(base, precision, useSmallBase));
+                    MathObject v=value.getValue();
+                    if(v instanceof Real){//stream digits of real numbers
+                        ((Real) v).writeFixedPoint(System.out::append,base, precision, useSmallBase);
+                    }else{
+                        System.out.print(v.toStringFixedPoint(base, precision, useSmallBase));
+                    }
                     if(newLine)
                         System.out.println();
                     return value;
                 }
                 case OUT_FLAG_FLOAT_EXACT:
                 case OUT_FLAG_FLOAT_APPROX:{//floating Point
-                    System.out.print(value.getValue()
-                            .toStringFloat(base, precision, useSmallBase));
+                    MathObject v=value.getValue();
+                    if(v instanceof Real){//stream digits of real numbers
+                        ((Real) v).writeFloat(System.out::append,base, precision, useSmallBase);
+                    }else{
+                        System.out.print(v.toStringFloat(base, precision, useSmallBase));
+                    }
                     if(newLine)
                         System.out.println();
                     return value;
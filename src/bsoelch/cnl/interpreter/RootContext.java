@@ -11,7 +11,7 @@ import java.util.HashMap;
 
 class RootContext extends Context {
     private final HashMap<BigInteger, Context> children = new HashMap<>();
-    private final HashMap<NumericValue, MathObject> vars = new HashMap<>();
+    private final VarFrame vars = new VarFrame();
     private final HashMap<BigInteger, Function> functions = new HashMap<>();
 
 
@@ -45,6 +45,19 @@ class RootContext extends Context {
         vars.put(id, value);
     }
 
+    @Override
+    MathObject getVar(int slot) {
+        MathObject value = vars.get(slot);
+        if (value == null)
+            value = Real.Int.ZERO;
+        return value;
+    }
+
+    @Override
+    void putVar(int slot, MathObject value) {
+        vars.put(slot, value);
+    }
+
     @Override
     public Function getFunction(BigInteger id) {
         Function f = functions.get(id);
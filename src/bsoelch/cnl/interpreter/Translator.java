@@ -89,13 +89,25 @@ public class Translator {
         if(next==-1){
             return -1;
         }else if(count>1){//mask
-            long[] tmp=new long[]{header};
-            file.readFully(tmp,count+1,count-1);
-            header=(int)tmp[0];
+            header|=(int)(file.readBitsAsLong(count-1)<<(count+1));
         }
         return header;
     }
 
+    /**reads a number that has to fit in an int,
+     * without creating a BigInteger if possible
+     * @see BitRandomAccessStream#readSmallInt(int, int, int) */
+    static int readInt(BitRandomAccessStream file,int headerLength, int blockLength, int bigBlockLength) throws IOException {
+        long value=file.readSmallInt(headerLength, blockLength, bigBlockLength);
+        return value>=0?Math.toIntExact(value):file.readBigInt(headerLength, blockLength, bigBlockLength).intValueExact();
+    }
+    /**reads an id and returns it as Real, without creating a BigInteger if possible
+     * @see BitRandomAccessStream#readSmallInt(int, int, int) */
+    static Real.Int readId(BitRandomAccessStream file,int headerLength, int blockLength, int bigBlockLength) throws IOException {
+        long value=file.readSmallInt(headerLength, blockLength, bigBlockLength);
+        return value>=0?Real.from(value):Real.from(file.readBigInt(headerLength, blockLength, bigBlockLength));
+    }
+
     /**reads an outId from the given File:
      * OutIds are of the Form:
      * <li> id>=OUT_STR_START -> STR
@@ -107,18 +119,14 @@ public class Translator {
             return 0;
         }else if(r==1){
             r=file.readBit();
-            long[] tmp=new long[1];
             if(r==0){//10__
-                file.readFully(tmp,0,2);
-                return (int)(tmp[0]+1);
+                return (int)(file.readBitsAsLong(2)+1);
             }else if(r==1){
                 r=file.readBit();
                 if(r==0){//110____
-                    file.readFully(tmp,0,4);
-                    return (int)(tmp[0]+5);
+                    return (int)(file.readBitsAsLong(4)+5);
                 }else if(r==1){//111_____
-                    file.readFully(tmp,0,5);
-                    return (int)(tmp[0]+21);
+                    return (int)(file.readBitsAsLong(5)+21);
                 }
             }
         }
@@ -154,77 +162,93 @@ public class Translator {
     }
 
     static public int getBracketID(BitRandomAccessStream file) throws IOException {
-        long[] tmp=new long[1];
         int next;
         if((next=file.readBit())==1){//improved BitUsage of 12 possible values
-            tmp[0]=1;
-            file.readFully(tmp,1,BRACKET_FLAG_LENGTH_ODD-1);
+            return 1|(int)(file.readBitsAsLong(BRACKET_FLAG_LENGTH_ODD-1)<<1);
         }else if(next==0){
-            file.readFully(tmp,1,BRACKET_FLAG_LENGTH_EVEN-1);
+            return (int)(file.readBitsAsLong(BRACKET_FLAG_LENGTH_EVEN-1)<<1);
         }else{
             throw new IllegalStateException("Unexpected End of File");
         }
-        return (int)tmp[0];
     }
 
+    /**reads the next action from the given binary code-stream*/
     public static Action nextAction(BitRandomAccessStream code, Context context,
                                     ExecutionEnvironment executionEnvironment, boolean isTopLayer, boolean skip) throws IOException {
-        Interpreter.CodePosition prevPos=new Interpreter.CodePosition(code, false);
+        long start=code.bitPos();
+        ActionTemplate template=decodeAction(code);
+        return template.create(code,start,code.bitPos(),context,executionEnvironment,isTopLayer,skip);
+    }
+
+    /**Template of the End of a code-file*/
+    static final ActionTemplate EOF_TEMPLATE=(file, start, end, context, exEnv, isTopLayer, skip) -> EOF;
+
+    /**decodes the next action from the given binary code-stream, the returned template
+     * only depends on the code and can be reused to create the action in different contexts
+     * @see ActionCache*/
+    static ActionTemplate decodeAction(BitRandomAccessStream code) throws IOException {
         int header= readHeader(code);
         if(header==-1){//End of file
-            return EOF;
+            return EOF_TEMPLATE;
         }
         switch (header){
             case HEADER_OPERATOR:
             case HEADER_OPERATOR_REFERENCE:{
                 boolean isRef=(header==HEADER_OPERATOR_REFERENCE);
-                BigInteger id= code.readBigInt(OPERATOR_INT_HEADER,OPERATOR_INT_BLOCK,OPERATOR_INT_BIG_BLOCK);
-                int intID = id.intValueExact();
+                int intID = readInt(code,OPERATOR_INT_HEADER,OPERATOR_INT_BLOCK,OPERATOR_INT_BIG_BLOCK);
                 Operators.OperatorInfo operatorInfo=Operators.byId(intID);
                 if(isRef&&(operatorInfo.needsEnvironment()||operatorInfo.isRuntimeOperator()))
                     throw new IllegalArgumentException("Cannot create OperatorReference from: "+operatorInfo.name);
                 if(operatorInfo.isRuntimeOperator()){
                     switch (operatorInfo.name) {
                         case Operators.DYNAMIC_VAR:
-                            return new VarPointer(context,null, false);
+                            return (file, start, end, context, exEnv, isTopLayer, skip) -> new VarPointer(context,null, false);
                         case Operators.WRITE_DYNAMIC_VAR:
-                            return new VarPointer(context,null, true);
-                        case Operators.WRITE_VAR:
-                            BigInteger varId = code.readBigInt(VAR_INT_HEADER, VAR_INT_BLOCK, VAR_INT_BIG_BLOCK);
-                            return new VarPointer(context,Real.from(varId), true);
-                        case Operators.CALL_FUNCTION:
+                            return (file, start, end, context, exEnv, isTopLayer, skip) -> new VarPointer(context,null, true);
+                        case Operators.WRITE_VAR: {
+                            Real varId = readId(code,VAR_INT_HEADER, VAR_INT_BLOCK, VAR_INT_BIG_BLOCK);
+                            int slot = VarFrame.slot(varId);
+                            return (file, start, end, context, exEnv, isTopLayer, skip) -> new VarPointer(context, varId, slot, true);
+                        }
+                        case Operators.CALL_FUNCTION: {
                             BigInteger fId = code.readBigInt(FUNCTION_ID_INT_HEADER, FUNCTION_ID_INT_BLOCK, FUNCTION_ID_INT_BIG_BLOCK);
-                            return new CallFunction(context, fId);
+                            return (file, start, end, context, exEnv, isTopLayer, skip) -> new CallFunction(context, fId);
+                        }
                         default:
                             throw new IllegalArgumentException("Unknown Dynamic Operator: " + operatorInfo.name);
                     }
                 } else if(operatorInfo.isNary){
-                    BigInteger numArgs=code.readBigInt(NARY_INT_HEADER,NARY_INT_BLOCK,NARY_INT_BIG_BLOCK);
+                    int numArgs=readInt(code,NARY_INT_HEADER,NARY_INT_BLOCK,NARY_INT_BIG_BLOCK);
                     if(isRef){
-                        return createOperatorReference(operatorInfo,numArgs.intValueExact()+operatorInfo.minArgs);
+                        ValuePointer ref=createOperatorReference(operatorInfo,numArgs+operatorInfo.minArgs);
+                        return (file, start, end, context, exEnv, isTopLayer, skip) -> ref;
                     }else {
-                        return new Operator(operatorInfo, numArgs.intValueExact(), executionEnvironment);
+                        return (file, start, end, context, exEnv, isTopLayer, skip) -> new Operator(operatorInfo, numArgs, exEnv);
                     }
                 }else{
                     if(isRef){
-                        return createOperatorReference(operatorInfo, operatorInfo.minArgs);
+                        ValuePointer ref=createOperatorReference(operatorInfo, operatorInfo.minArgs);
+                        return (file, start, end, context, exEnv, isTopLayer, skip) -> ref;
                     }else {
-                        return new Operator(operatorInfo, executionEnvironment);
+                        return (file, start, end, context, exEnv, isTopLayer, skip) -> new Operator(operatorInfo, exEnv);
                     }
                 }
             }
             case HEADER_VAR:{
-                BigInteger id = code.readBigInt(VAR_INT_HEADER, VAR_INT_BLOCK, VAR_INT_BIG_BLOCK);
-                return new VarPointer(context,Real.from(id),false);
+                Real id = readId(code,VAR_INT_HEADER, VAR_INT_BLOCK, VAR_INT_BIG_BLOCK);
+                int slot = VarFrame.slot(id);
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> new VarPointer(context,id,slot,false);
             }
             case HEADER_INT:{
                 BigInteger value = code.readBigInt(INT_HEADER, INT_BLOCK, INT_BIG_BLOCK);
-                return wrap(Real.from(value));
+                ValuePointer wrapped=wrap(Real.from(value));
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> wrapped;
             }
             case HEADER_FRACTION:{
                 BigInteger a = code.readBigInt(INT_HEADER, INT_BLOCK, INT_BIG_BLOCK).add(BigInteger.ONE);//a always >=1
                 BigInteger b = code.readBigInt(INT_HEADER, INT_BLOCK, INT_BIG_BLOCK).add(BIG_INT_TWO);//b always >=2
-                return wrap(Real.from(a,b));
+                ValuePointer wrapped=wrap(Real.from(a,b));
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> wrapped;
             }
             case HEADER_BRACKET:{
                 int id = getBracketID(code);
@@ -240,52 +264,49 @@ public class Translator {
                     case BRACKET_FLAG_ELIF_NE:
                     case BRACKET_FLAG_END:
                     case BRACKET_FLAG_BREAK:
-                        return new BracketDeclaration(context, id, prevPos);
                     case BRACKET_FLAG_DO:
-                        return new BracketDeclaration(context, id, new Interpreter.CodePosition(code, false));
-
+                        return new ActionTemplate.Bracket(id);
+                    default:throw new IllegalArgumentException("Unknown Bracket ID:"+id);
                 }
             }
             case HEADER_CONSTANTS:{
-                BigInteger id= code.readBigInt(CONSTANTS_INT_HEADER,CONSTANTS_INT_BLOCK,CONSTANTS_INT_BIG_BLOCK);
-                switch (id.intValueExact()){
-                    case CONSTANT_RES:return context.RES;
-                    case CONSTANT_ARG_COUNT:return context.COUNT;
-                    case CONSTANT_I:return I;
-                    case CONSTANT_EXIT:return EXIT;
-                    case CONSTANT_EMPTY_SET:return EMPTY_SET;
-                    case CONSTANT_EMPTY_MAP:return EMPTY_MAP;
+                int id= readInt(code,CONSTANTS_INT_HEADER,CONSTANTS_INT_BLOCK,CONSTANTS_INT_BIG_BLOCK);
+                switch (id){
+                    case CONSTANT_RES:return (file, start, end, context, exEnv, isTopLayer, skip) -> context.RES;
+                    case CONSTANT_ARG_COUNT:return (file, start, end, context, exEnv, isTopLayer, skip) -> context.COUNT;
+                    case CONSTANT_I:return (file, start, end, context, exEnv, isTopLayer, skip) -> I;
+                    case CONSTANT_EXIT:return (file, start, end, context, exEnv, isTopLayer, skip) -> EXIT;
+                    case CONSTANT_EMPTY_SET:return (file, start, end, context, exEnv, isTopLayer, skip) -> EMPTY_SET;
+                    case CONSTANT_EMPTY_MAP:return (file, start, end, context, exEnv, isTopLayer, skip) -> EMPTY_MAP;
+                    default:throw new IllegalArgumentException("Unknown Constant ID:"+id);
                 }
             }
             case HEADER_FUNCTION_ARG:{
                 BigInteger id= code.readBigInt(FUNCTION_ARG_INT_HEADER, FUNCTION_ARG_INT_BLOCK, FUNCTION_ARG_INT_BIG_BLOCK);
-                return skip?wrap(Real.Int.ZERO):context.argPointer(id);
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> skip?ZERO:context.argPointer(id);
             }
             case HEADER_FUNCTION_DECLARATION:{
-                if(!isTopLayer)
-                    throw new IllegalStateException("Function Declarations in Brackets are not allowed");
-                BigInteger argCount = code.readBigInt(FUNCTION_ARG_INT_HEADER, FUNCTION_ARG_INT_BLOCK, FUNCTION_ARG_INT_BIG_BLOCK);
+                int argCount = readInt(code,FUNCTION_ARG_INT_HEADER, FUNCTION_ARG_INT_BLOCK, FUNCTION_ARG_INT_BIG_BLOCK);
                 BigInteger id = code.readBigInt(FUNCTION_ID_INT_HEADER, FUNCTION_ID_INT_BLOCK, FUNCTION_ID_INT_BIG_BLOCK);
-                return new FunctionDeclaration(id,new Function(context,new Interpreter.CodePosition(code, false)
-                        ,argCount.intValueExact()));
+                return new ActionTemplate.FunctionDefinition(id,argCount);
             }
             case HEADER_ENVIRONMENT:{
                 BigInteger id= code.readBigInt(ENVIRONMENTS_INT_HEADER,ENVIRONMENTS_INT_BLOCK,ENVIRONMENTS_INT_BIG_BLOCK);
-                if (id.equals(BigInteger.ZERO)) {
-                    return new RunIn();
-                } else {
-                    return new RunIn(id.subtract(BigInteger.ONE));//offset by one for synchronization with IMPORT
-                }
+                //RunIn is immutable -> can be shared
+                RunIn runIn= id.equals(BigInteger.ZERO) ? new RunIn() :
+                        new RunIn(id.subtract(BigInteger.ONE));//offset by one for synchronization with IMPORT
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> runIn;
             }
             case HEADER_IMPORT:{
-                if(!isTopLayer)
-                    throw new IllegalStateException("Imports in Brackets are not allowed");
                 BigInteger id= code.readBigInt(ENVIRONMENTS_INT_HEADER,ENVIRONMENTS_INT_BLOCK,ENVIRONMENTS_INT_BIG_BLOCK);
-                return new Import(context,id);
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> {
+                    if(!isTopLayer)
+                        throw new IllegalStateException("Imports in Brackets are not allowed");
+                    return new Import(context,id);
+                };
             }
             case HEADER_LAMBDA:{
-                BigInteger argCount=code.readBigInt(LAMBDA_COUNT_INT_HEADER,LAMBDA_COUNT_INT_BLOCK,LAMBDA_COUNT_INT_BIG_BLOCK);
-                int count=argCount.intValueExact()+1;
+                int count=readInt(code,LAMBDA_COUNT_INT_HEADER,LAMBDA_COUNT_INT_BLOCK,LAMBDA_COUNT_INT_BIG_BLOCK)+1;
                 LambdaVariable[] vars=new LambdaVariable[count];
                 for(int i=0;i<count;i++){
                     BigInteger id = code.readBigInt(LAMBDA_VAR_INT_HEADER, LAMBDA_VAR_INT_BLOCK, LAMBDA_VAR_INT_BIG_BLOCK);
@@ -295,20 +316,22 @@ public class Translator {
                     }
                     vars[i]=new LambdaVariable(id);
                 }
-                return new BindLambda(vars);
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> new BindLambda(vars);
             }
             case HEADER_LAMBDA_VARIABLE:{
                 BigInteger id = code.readBigInt(LAMBDA_VAR_INT_HEADER, LAMBDA_VAR_INT_BLOCK, LAMBDA_VAR_INT_BIG_BLOCK);
-                return wrap(LambdaExpression.from(new LambdaVariable(id),new LambdaVariable[0]));
+                ValuePointer wrapped=wrap(LambdaExpression.from(new LambdaVariable(id),new LambdaVariable[0]));
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> wrapped;
             }
             case HEADER_IN:{
-                long[] tmp=new long[1];
-                code.readFully(tmp,0, IN_TYPES_LENGTH);
+                int type=(int)code.readBitsAsLong(IN_TYPES_LENGTH);
                 BigInteger base=null;
-                if(tmp[0]==IN_TYPE_BASE_N){
+                if(type==IN_TYPE_BASE_N){
                     base=code.readBigInt(IO_INT_HEADER,IO_INT_BLOCK,IO_INT_BIG_BLOCK);
                 }
-                return new Input((int)tmp[0],base);
+                //Input has no mutable state -> can be shared
+                Input input=new Input(type,base);
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> input;
             }
             case HEADER_OUT:
             case HEADER_OUT_NEW_LINE:{
@@ -342,7 +365,8 @@ public class Translator {
                     }
                     type=id%OUT_NUMBER_BLOCK_LENGTH;
                 }
-                return new Output(isNumber,useSmallBase, header==HEADER_OUT_NEW_LINE, base,type);
+                boolean newLine=header==HEADER_OUT_NEW_LINE;
+                return (file, start, end, context, exEnv, isTopLayer, skip) -> new Output(isNumber,useSmallBase, newLine, base,type);
             }
             default:throw new IllegalArgumentException("Unknown Header: 0b"+Integer.toBinaryString(header));
         }
@@ -954,47 +978,66 @@ public class Translator {
         }
         try (Reader source=new InputStreamReader(new FileInputStream(sourceFile), StandardCharsets.UTF_8)) {
             FileHeader header = readAssemblyFileHeader(source);
-            if (header.type == FILE_TYPE_INVALID)
-                throw new IOException("Invalid source-file, all cnl-assembly files have to start with CNLA<whitespace> or CNLA:<argCount>");
             try (BitRandomAccessStream target = new BitRandomAccessFile(targetFile, "rw")) {
-                MathObject[] args;
-                if (header.type == FILE_TYPE_ASSEMBLY) {
-                    writeCodeHeader(target, new FileHeader(FILE_TYPE_CODE, CODE_VERSION, null));
-                    args = new MathObject[0];
-                } else if (header.type == FILE_TYPE_EXECUTABLE_ASSEMBLY) {
-                    writeCodeHeader(target, new FileHeader(FILE_TYPE_EXECUTABLE, CODE_VERSION, header.argCount));
-                    args = new MathObject[header.argCount.intValueExact()];
-                    Arrays.fill(args, Real.Int.ZERO);
-                } else {
-                    throw new IOException("Invalid source-file, all cnl-assembly files have to start with CNLA<whitespace> or CNLA:<argCount>");
+                compile(source, header, target, targetFile, true);
+            }
+        }
+    }
+    /**compiles a CNL-assembly file to binary code that is only stored in memory,
+     * used to execute assembly files without translating the code in every step
+     * @return the compiled code, positioned at the start of the file-header*/
+    public static BitRandomAccessStream compileToMemory(File sourceFile) throws IOException, SyntaxError, CNL_RuntimeException {
+        BitRandomAccessStream target=new BitRandomAccessBuffer(sourceFile.getAbsolutePath());
+        try (Reader source=new InputStreamReader(new FileInputStream(sourceFile), StandardCharsets.UTF_8)) {
+            FileHeader header = readAssemblyFileHeader(source);
+            compile(source, header, target, sourceFile, false);
+        }
+        target.seek(0);
+        return target;
+    }
+    /**@param source assembly code, positioned after the file-header
+     * @param header header of the assembly code
+     * @param codeFile file used to resolve imports
+     * @param printInfo if true the number of compiled actions and bits is printed*/
+    private static void compile(Reader source, FileHeader header, BitRandomAccessStream target, File codeFile, boolean printInfo)
+            throws IOException, SyntaxError, CNL_RuntimeException {
+        MathObject[] args;
+        if (header.type == FILE_TYPE_ASSEMBLY) {
+            writeCodeHeader(target, new FileHeader(FILE_TYPE_CODE, CODE_VERSION, null));
+            args = new MathObject[0];
+        } else if (header.type == FILE_TYPE_EXECUTABLE_ASSEMBLY) {
+            writeCodeHeader(target, new FileHeader(FILE_TYPE_EXECUTABLE, CODE_VERSION, header.argCount));
+            args = new MathObject[header.argCount.intValueExact()];
+            Arrays.fill(args, Real.Int.ZERO);
+        } else {
+            throw new IOException("Invalid source-file, all cnl-assembly files have to start with CNLA<whitespace> or CNLA:<argCount>");
+        }
+        //position after end of header
+        long startPos = target.bitPos();
+        try (Interpreter test = new Interpreter(args, false, codeFile, true)) {
+            Action a;
+            long actions = 0;
+            do {
+                while (test.isImporting())
+                    test.flatStep();//flatRun Imports
+                try {
+                    a = nextAction(source, null, test.programEnvironment(), test.executionEnvironment(), test.isTopLayer(), false);
+                } catch (IllegalArgumentException | UnsupportedOperationException| IndexOutOfBoundsException e) {
+                    throw new SyntaxError(test, e);
+                } catch (ArithmeticException e) {
+                    throw new CNL_RuntimeException(test, e);
                 }
-                //position after end of header
-                long startPos = target.bitPos();
-                try (Interpreter test = new Interpreter(args, false, targetFile, true)) {
-                    Action a;
-                    long actions = 0;
-                    do {
-                        while (test.isImporting())
-                            test.flatStep();//flatRun Imports
-                        try {
-                            a = nextAction(source, null, test.programEnvironment(), test.executionEnvironment(), test.isTopLayer(), false);
-                        } catch (IllegalArgumentException | UnsupportedOperationException| IndexOutOfBoundsException e) {
-                            throw new SyntaxError(test, e);
-                        } catch (ArithmeticException e) {
-                            throw new CNL_RuntimeException(test, e);
-                        }
-                        test.stepInternal(a, false);//flat run code to detect syntax errors
-                        if (a == EOF) {
-                            Main.compileFinished(actions, target.bitPos() - startPos);
-                            target.truncateToSize(true);
-                            return;
-                        } else {
-                            a.writeTo(target);
-                            actions++;
-                        }
-                    } while (true);
+                test.stepInternal(a, false);//flat run code to detect syntax errors
+                if (a == EOF) {
+                    if(printInfo)
+                        Main.compileFinished(actions, target.bitPos() - startPos);
+                    target.truncateToSize(true);
+                    return;
+                } else {
+                    a.writeTo(target);
+                    actions++;
                 }
-            }
+            } while (true);
         }
     }
 
@@ -1017,7 +1060,7 @@ public class Translator {
         }else if(!targetFile.createNewFile()){
             throw new IOException("target-file does not exists");
         }
-        try(BitRandomAccessStream source=new BitRandomAccessFile(sourceFile,"rw")) {
+        try(BitRandomAccessStream source=BitRandomAccessBuffer.open(sourceFile)) {
             try (Writer target = new OutputStreamWriter(new FileOutputStream(targetFile), StandardCharsets.UTF_8)) {
                 FileHeader header = readCodeFileHeader(source);
                 if (header.type == FILE_TYPE_INVALID)
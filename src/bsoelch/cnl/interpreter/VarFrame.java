@@ -0,0 +1,63 @@
+package bsoelch.cnl.interpreter;
+
+import bsoelch.cnl.math.MathObject;
+import bsoelch.cnl.math.NumericValue;
+import bsoelch.cnl.math.Real;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**Variables of a Context,
+ * variables with a small non-negative integer id (the ids used by VAR_n) are stored in an array indexed by their id,
+ * all other variables are stored in a HashMap*/
+class VarFrame {
+    /**number of variable ids that are stored in slots*/
+    static final int SLOT_COUNT=256;
+
+    private MathObject[] slots=new MathObject[8];
+    private final HashMap<NumericValue, MathObject> vars = new HashMap<>();
+
+    /**@param id normalized variable id (non-null)
+     * @return the slot of the variable with the given id or -1 if the variable is not stored in a slot*/
+    static int slot(NumericValue id){
+        if(id instanceof Real.Int){
+            Real.Int i=(Real.Int)id;
+            if(i.isSmall()){
+                long slot=i.longValueExact();
+                return slot>=0&&slot<SLOT_COUNT?(int)slot:-1;
+            }
+        }
+        return -1;
+    }
+
+    /**@return the value of the variable in the given slot, or null if the variable was not assigned*/
+    MathObject get(int slot){
+        return slot<slots.length?slots[slot]:null;
+    }
+    /**@param id normalized variable id (non-null)
+     * @return the value of the variable with the given id, or null if the variable was not assigned*/
+    MathObject get(NumericValue id){
+        int slot=slot(id);
+        return slot>=0?get(slot):vars.get(id);
+    }
+
+    void put(int slot,MathObject value){
+        if(slot>=slots.length)
+            slots=Arrays.copyOf(slots,Math.min(SLOT_COUNT,Math.max(2*slots.length,slot+1)));
+        slots[slot]=value;
+    }
+    /**@param id normalized variable id (non-null)*/
+    void put(NumericValue id,MathObject value){
+        int slot=slot(id);
+        if(slot>=0){
+            put(slot,value);
+        }else{
+            vars.put(id,value);
+        }
+    }
+
+    void clear(){
+        Arrays.fill(slots,null);
+        vars.clear();
+    }
+}
@@ -14,6 +14,8 @@ import static bsoelch.cnl.Constants.*;
 class VarPointer implements ValuePointer {
     private final Context myEnv;
     private MathObject varId;
+    /**slot of the variable or -1 if the variable is accessed by its id*/
+    private final int slot;
     private final boolean forceWrite;
     private boolean active = true;
 
@@ -21,14 +23,32 @@ class VarPointer implements ValuePointer {
      * @param env program context
      * @param id id of this Var or null if this is a dynamic-var
      * @param forceWrite true if this operation has to modify a variable operations*/
-    VarPointer(Context env, NumericValue id,boolean forceWrite) {
+    VarPointer(Context env, MathObject id,boolean forceWrite) {
+        this(env, id, id instanceof NumericValue?VarFrame.slot(((NumericValue) id).numericValue()):-1, forceWrite);
+    }
+    /**Creates a Pointer to a Variable with a specific id
+     * @param env program context
+     * @param id id of this Var or null if this is a dynamic-var
+     * @param slot slot of this var, has to be -1 or the slot of id
+     * @param forceWrite true if this operation has to modify a variable operations*/
+    VarPointer(Context env, MathObject id, int slot, boolean forceWrite) {
         myEnv = env;
         this.varId = id;
+        this.slot = slot;
         this.forceWrite=forceWrite;
     }
 
     public MathObject getValue() {
-        return myEnv.getVar(varId);
+        return slot>=0?myEnv.getVar(slot):myEnv.getVar(varId);
+    }
+
+    /**@return id of this Var or null if the id of this dynamic-var is not yet known*/
+    MathObject getVarId() {
+        return varId;
+    }
+
+    boolean isForceWrite() {
+        return forceWrite;
     }
 
     @Override
@@ -42,7 +62,11 @@ class VarPointer implements ValuePointer {
     }
 
     public void setValue(MathObject newValue) {
-        myEnv.putVar(varId, newValue);
+        if(slot>=0){
+            myEnv.putVar(slot, newValue);
+        }else{
+            myEnv.putVar(varId, newValue);
+        }
     }
 
     @Override
@@ -50,7 +74,7 @@ class VarPointer implements ValuePointer {
         if (varId == null) {
             varId = arg.getValue();
         } else {
-            myEnv.putVar(varId, arg.getValue());
+            setValue(arg.getValue());
             active = false;
         }
     }
@@ -0,0 +1,128 @@
+package bsoelch.cnl.math;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinTask;
+
+/**Multiplication and division of very large integers, that can use multiple threads,
+ * the parallel algorithms are only used if they are enabled with {@link #setParallel(boolean)}
+ * and both operands have at least {@link #getParallelThreshold()} bits*/
+public final class BigArithmetic {
+    private BigArithmetic(){}
+
+    /**default value of the parallel threshold*/
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1<<20;
+    /**the parallel threshold cannot be lower than this value,
+     * as smaller products are faster without the overhead of creating new tasks*/
+    private static final int MIN_PARALLEL_THRESHOLD = 1<<14;
+    /**reciprocals with at most this precision are calculated directly*/
+    private static final int NEWTON_THRESHOLD = 1<<12;
+    /**extra bits of precision for the reciprocal*/
+    private static final int GUARD_BITS = 32;
+
+    private static volatile boolean parallel = false;
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**enables or disables the parallel multiplication and division*/
+    public static void setParallel(boolean enabled){
+        parallel=enabled;
+    }
+    public static boolean isParallel(){
+        return parallel;
+    }
+    /**@param bits minimal number of bits of both operands for using the parallel algorithms
+     * @throws IllegalArgumentException if bits is lower than the minimal supported threshold*/
+    public static void setParallelThreshold(int bits){
+        if(bits<MIN_PARALLEL_THRESHOLD)
+            throw new IllegalArgumentException("parallel threshold has to be at least "+MIN_PARALLEL_THRESHOLD);
+        parallelThreshold=bits;
+    }
+    public static int getParallelThreshold(){
+        return parallelThreshold;
+    }
+
+    private static boolean useParallel(BigInteger a, BigInteger b){
+        return parallel&&Math.min(a.bitLength(),b.bitLength())>=parallelThreshold;
+    }
+
+    /**@return a*b*/
+    static BigInteger multiply(BigInteger a, BigInteger b){
+        if(useParallel(a,b))
+            return parallelMultiply(a,b,parallelThreshold);
+        return a.multiply(b);
+    }
+    /**@return a/b rounded towards zero, same as {@link BigInteger#divide(BigInteger)}*/
+    static BigInteger divide(BigInteger a, BigInteger b){
+        if(useParallel(a,b))
+            return newtonDivideAndRemainder(a,b)[0];
+        return a.divide(b);
+    }
+    /**@return a/b rounded towards zero and the remainder, same as {@link BigInteger#divideAndRemainder(BigInteger)}*/
+    static BigInteger[] divideAndRemainder(BigInteger a, BigInteger b){
+        if(useParallel(a,b))
+            return newtonDivideAndRemainder(a,b);
+        return a.divideAndRemainder(b);
+    }
+
+    /**karatsuba multiplication, the three partial products are calculated in parallel,
+     * products of numbers with less than threshold bits are calculated with {@link BigInteger#multiply(BigInteger)}*/
+    private static BigInteger parallelMultiply(BigInteger a, BigInteger b, int threshold){
+        if(Math.min(a.bitLength(),b.bitLength())<threshold)
+            return a.multiply(b);
+        if(a.signum()<0)
+            return parallelMultiply(a.negate(),b,threshold).negate();
+        if(b.signum()<0)
+            return parallelMultiply(a,b.negate(),threshold).negate();
+        int half=Math.max(a.bitLength(),b.bitLength())/2;
+        BigInteger a1=a.shiftRight(half),a0=a.subtract(a1.shiftLeft(half));
+        BigInteger b1=b.shiftRight(half),b0=b.subtract(b1.shiftLeft(half));
+        ForkJoinTask<BigInteger> high=ForkJoinTask.adapt(()->parallelMultiply(a1,b1,threshold)).fork();
+        ForkJoinTask<BigInteger> low=ForkJoinTask.adapt(()->parallelMultiply(a0,b0,threshold)).fork();
+        BigInteger mid=parallelMultiply(a1.add(a0),b1.add(b0),threshold);
+        BigInteger z2=high.join(),z0=low.join();
+        mid=mid.subtract(z2).subtract(z0);
+        return z2.shiftLeft(2*half).add(mid.shiftLeft(half)).add(z0);
+    }
+
+    /**division by multiplication with the reciprocal of b, calculated with newton iteration*/
+    private static BigInteger[] newtonDivideAndRemainder(BigInteger a, BigInteger b){
+        if(b.signum()==0)
+            throw new ArithmeticException("BigInteger divide by zero");
+        BigInteger absA=a.abs(),absB=b.abs();
+        int n=absB.bitLength(),precision=absA.bitLength()-n+1+GUARD_BITS;
+        if(precision<=GUARD_BITS)//|a|<|b|
+            return new BigInteger[]{BigInteger.ZERO,a};
+        int threshold=parallelThreshold;
+        BigInteger r=reciprocal(absB,precision,threshold);
+        BigInteger q=parallelMultiply(absA,r,threshold).shiftRight(n+precision);
+        BigInteger rem=absA.subtract(parallelMultiply(q,absB,threshold));
+        if(rem.signum()<0){
+            q=q.subtract(BigInteger.ONE);
+            rem=rem.add(absB);
+        }
+        if(rem.signum()<0||rem.compareTo(absB.shiftLeft(2))>=0){//estimate too far off, should not happen
+            return a.divideAndRemainder(b);
+        }
+        while(rem.compareTo(absB)>=0){
+            q=q.add(BigInteger.ONE);
+            rem=rem.subtract(absB);
+        }
+        return new BigInteger[]{a.signum()==b.signum()?q:q.negate(),a.signum()<0?rem.negate():rem};
+    }
+    /**approximation of 2^(n+precision)/b where n is the bit-length of b,
+     * the iteration only uses the leading bits of b that are needed for the given precision*/
+    private static BigInteger reciprocal(BigInteger b, int precision, int threshold){
+        int n=b.bitLength();
+        int shift=Math.max(0,n-precision-GUARD_BITS);
+        if(shift>0){
+            //2^(n+p)/b = 2^(n-shift+p)/(b/2^shift) up to the precision of the truncated b
+            return reciprocal(b.shiftRight(shift),precision,threshold);
+        }
+        if(precision<=NEWTON_THRESHOLD)
+            return BigInteger.ONE.shiftLeft(n+precision).divide(b);
+        int half=precision/2+GUARD_BITS;
+        BigInteger x=reciprocal(b,half,threshold).shiftLeft(precision-half);
+        //x+x*(2^(n+p)-b*x)/2^(n+p)
+        BigInteger e=BigInteger.ONE.shiftLeft(n+precision).subtract(parallelMultiply(b,x,threshold));
+        return x.add(parallelMultiply(x,e,threshold).shiftRight(n+precision));
+    }
+}
@@ -6,75 +6,205 @@ import java.util.function.Function;
 
 /**ComplexNumber with rational real and imaginary part*/
 public final class Complex extends NumericValue {
-    public static final Complex I = new Complex(Real.Int.ZERO, Real.Int.ONE);
+    public static final Complex I = new Complex(BigInteger.ZERO, BigInteger.ONE, BigInteger.ONE);
 
-    /** a/b + * c/d */
-    private final Real re,im;
+    /**products of numbers with at least this number of bits are calculated with 3 instead of 4 multiplications*/
+    private static final int KARATSUBA_THRESHOLD = 1024;
+
+    /** (x + y * i) / den, with den>0 and gcd(x,y,den)=1 */
+    private final BigInteger x,y,den;
+    /**real and imaginary part, only created when they are needed*/
+    private Real re,im;
 
     public static NumericValue from(Real re, Real im){
         if(im.equals(Real.Int.ZERO))
             return re;
         if(re.equals(Real.Int.ZERO)&&im.equals(Real.Int.ONE))
             return I;
-        return new Complex(re, im);
+        BigInteger den = re.den().divide(re.den().gcd(im.den())).multiply(im.den());
+        Complex ret=new Complex(re.num().multiply(den.divide(re.den())), im.num().multiply(den.divide(im.den())), den);
+        ret.re=re;
+        ret.im=im;
+        return ret;
+    }
+    /**the complex number (x + y * i) / den
+     * @param den positive denominator*/
+    private static NumericValue from(BigInteger x, BigInteger y, BigInteger den){
+        if(y.signum()==0)
+            return Real.from(x,den);
+        BigInteger g=den.gcd(x);
+        if(!g.equals(BigInteger.ONE)){
+            g=g.gcd(y);
+            if(!g.equals(BigInteger.ONE)){
+                x=x.divide(g);
+                y=y.divide(g);
+                den=den.divide(g);
+            }
+        }
+        return fromReduced(x,y,den);
+    }
+    /**the complex number (x + y * i) / den, for values with gcd(x,y,den)=1
+     * @param den positive denominator*/
+    private static NumericValue fromReduced(BigInteger x, BigInteger y, BigInteger den){
+        if(y.signum()==0)
+            return Real.fromReduced(x,den);
+        if(x.signum()==0&&y.equals(BigInteger.ONE)&&den.equals(BigInteger.ONE))
+            return I;
+        return new Complex(x,y,den);
     }
 
-    private Complex(Real re, Real im) {
-        this.re=re;
-        this.im=im;
+    private Complex(BigInteger x, BigInteger y, BigInteger den) {
+        this.x=x;
+        this.y=y;
+        this.den=den;
+    }
+
+    /**a+b for NumericValues a,b where at least one of them is a Complex number*/
+    static NumericValue addComplex(NumericValue a, NumericValue b){
+        BigInteger x1=a instanceof Complex?((Complex) a).x:((Real)a).num(),y1=a instanceof Complex?((Complex) a).y:BigInteger.ZERO,
+                d1=a instanceof Complex?((Complex) a).den:((Real)a).den();
+        BigInteger x2=b instanceof Complex?((Complex) b).x:((Real)b).num(),y2=b instanceof Complex?((Complex) b).y:BigInteger.ZERO,
+                d2=b instanceof Complex?((Complex) b).den:((Real)b).den();
+        if(d1.equals(d2)){
+            return from(x1.add(x2),y1.add(y2),d1);
+        }
+        BigInteger g=d1.gcd(d2);
+        if(g.equals(BigInteger.ONE)){//no common factors of the numerator and d1*d2
+            return fromReduced(x1.multiply(d2).add(x2.multiply(d1)),y1.multiply(d2).add(y2.multiply(d1)),d1.multiply(d2));
+        }
+        BigInteger d1g=d1.divide(g),d2g=d2.divide(g);
+        BigInteger tx=x1.multiply(d2g).add(x2.multiply(d1g)),ty=y1.multiply(d2g).add(y2.multiply(d1g));
+        //common factors of the numerator and d1*d2/g can only be factors of g
+        BigInteger g2=g.gcd(tx).gcd(ty);
+        if(g2.equals(BigInteger.ONE)){
+            return fromReduced(tx,ty,d1g.multiply(d2));
+        }else{
+            return fromReduced(tx.divide(g2),ty.divide(g2),d1g.multiply(d2.divide(g2)));
+        }
+    }
+    /**a*b for NumericValues a,b where at least one of them is a Complex number*/
+    static NumericValue multiplyComplex(NumericValue a, NumericValue b){
+        if(!(a instanceof Complex)){
+            Complex c=(Complex)b;
+            return from(c.x.multiply(((Real)a).num()),c.y.multiply(((Real)a).num()),c.den.multiply(((Real)a).den()));
+        }else if(!(b instanceof Complex)){
+            Complex c=(Complex)a;
+            return from(c.x.multiply(((Real)b).num()),c.y.multiply(((Real)b).num()),c.den.multiply(((Real)b).den()));
+        }
+        Complex c1=(Complex)a,c2=(Complex)b;
+        BigInteger[] prod=multiply(c1.x,c1.y,c2.x,c2.y);
+        return from(prod[0],prod[1],c1.den.multiply(c2.den));
+    }
+    /**product of the gaussian integers x1 + y1 * i and x2 + y2 * i
+     * @return real and imaginary part of the product*/
+    private static BigInteger[] multiply(BigInteger x1, BigInteger y1, BigInteger x2, BigInteger y2){
+        if(Math.min(Math.max(x1.bitLength(),y1.bitLength()),Math.max(x2.bitLength(),y2.bitLength()))>=KARATSUBA_THRESHOLD){
+            BigInteger k1=x2.multiply(x1.add(y1)),k2=x1.multiply(y2.subtract(x2)),k3=y1.multiply(x2.add(y2));
+            return new BigInteger[]{k1.subtract(k3),k1.add(k2)};
+        }
+        return new BigInteger[]{x1.multiply(x2).subtract(y1.multiply(y2)),x1.multiply(y2).add(y1.multiply(x2))};
+    }
+    /**a/b for NumericValues a,b where at least one of them is a Complex number*/
+    static NumericValue divideComplex(NumericValue a, NumericValue b){
+        if(!(b instanceof Complex)){
+            Complex c=(Complex)a;
+            BigInteger num=((Real)b).num(),den=((Real)b).den();
+            if(num.signum()==0)
+                throw new ArithmeticException("Division by zero");
+            if(num.signum()<0){
+                num=num.negate();
+                den=den.negate();
+            }
+            return from(c.x.multiply(den),c.y.multiply(den),c.den.multiply(num));
+        }
+        Complex c=(Complex)b;
+        BigInteger sqAbs=c.x.multiply(c.x).add(c.y.multiply(c.y));
+        if(!(a instanceof Complex)){
+            BigInteger num=((Real)a).num().multiply(c.den);
+            return from(num.multiply(c.x),num.multiply(c.y).negate(),((Real)a).den().multiply(sqAbs));
+        }
+        Complex c1=(Complex)a;
+        BigInteger[] prod=multiply(c1.x,c1.y,c.x,c.y.negate());
+        return from(prod[0].multiply(c.den),prod[1].multiply(c.den),c1.den.multiply(sqAbs));
     }
 
     public NumericValue negate() {
-        return from(re.negate(),im.negate());
+        return fromReduced(x.negate(),y.negate(),den);
     }
     public NumericValue conjugate() {
-        return from(re,im.negate());
+        return fromReduced(x,y.negate(),den);
     }
 
     public NumericValue invert() {
-        return NumericValue.multiply(conjugate(),sqAbs().invert());
+        return from(x.multiply(den),y.multiply(den).negate(),x.multiply(x).add(y.multiply(y)));
     }
 
     public NumericValue round(int mode) {
-        return from(re.round(mode),im.round(mode));
+        return from(realPart().round(mode),imaginaryPart().round(mode));
     }
 
     public boolean isReal(){
-        return im.equals(Real.Int.ZERO);
+        return false;
     }
     public boolean isInt(){
-        return re.isInt()&&im.isInt();
+        return den.equals(BigInteger.ONE);
     }
 
     public Real realPart() {
+        if(re==null)
+            re=Real.from(x,den);
         return re;
     }
 
     public Real imaginaryPart() {
+        if(im==null)
+            im=Real.from(y,den);
         return im;
     }
 
     public NumericValue approx(Real precision) {
-        return from(re.approx(precision),im.approx(precision));
+        return from(realPart().approx(precision),imaginaryPart().approx(precision));
     }
 
 
+    /**calculates this^n for n>0, the power is computed as power of the gaussian integer
+     * numerator of this number, to avoid reducing the intermediate results*/
+    NumericValue pow(int n) {
+        BigInteger x = this.x, y = this.y;
+        BigInteger resX = BigInteger.ONE, resY = BigInteger.ZERO, tmp;
+        BigInteger den = this.den.pow(n);
+        while (true) {
+            if ((n & 1) == 1) {
+                BigInteger[] prod = multiply(resX, resY, x, y);
+                resX = prod[0];
+                resY = prod[1];
+            }
+            n >>>= 1;
+            if (n == 0)
+                break;
+            tmp = x.add(y).multiply(x.subtract(y));
+            y = x.multiply(y).shiftLeft(1);
+            x = tmp;
+        }
+        return from(resX, resY, den);
+    }
+
     public Real sqAbs() {
-        return Real.add(Real.multiply(re,re), Real.multiply(im,im));
+        return Real.from(x.multiply(x).add(y.multiply(y)),den.multiply(den));
     }
 
     @Override
     public int compareTo( NumericValue s) {
         if(s instanceof Real){
-            int c=re.compareTo(s);
+            int c=realPart().compareTo(s);
             if(c!=0)
                 return c;
-            return im.compareTo(Real.Int.ZERO);
+            return y.signum();
         }else if(s instanceof Complex){
-            int t=re.compareTo(((Complex) s).re);
+            int t=realPart().compareTo(s.realPart());
             if(t!=0)
                 return t;
-            return im.compareTo(((Complex) s).im);
+            return imaginaryPart().compareTo(s.imaginaryPart());
         }else{
             return -s.compareTo(this);
         }
@@ -85,38 +215,32 @@ public final class Complex extends NumericValue {
         if (this == o) return true;
         if (!(o instanceof NumericValue)) return false;
         if(o instanceof Real){
-            return im.equals(Real.Int.ZERO)&&re.equals(o);
+            return false;//the imaginary part of a Complex number is never zero
         }else if(o instanceof Complex){
             Complex that = (Complex) o;
-            return Objects.equals(re, that.re) && Objects.equals(im, that.im);
+            return x.equals(that.x) && y.equals(that.y) && den.equals(that.den);
         }else{
             return o.equals(this);
         }
     }
     @Override
     public int hashCode() {
-        return im.equals(Real.Int.ZERO)?re.hashCode():Objects.hash(re,im);
+        return Objects.hash(realPart(),imaginaryPart());
     }
 
 
     private String toString(BigInteger base, Function<Real,String> realToString){
         String ret;
-        if(re.equals(Real.Int.ZERO)){
+        if(x.signum()==0){
             ret="";
         }else {
-            ret=realToString.apply(re);
+            ret=realToString.apply(realPart());
         }
-        if(im.equals(Real.Int.ZERO)){
-            if(ret.length()==0)
-                return "0";
-            else
-                return ret;
+        //the imaginary part of a Complex number is never zero
+        if(base.compareTo(Real.MAX_BASE_I)<0) {
+            return ret+(y.signum() != -1?"+":"")+realToString.apply(imaginaryPart())+"i";
         }else{
-            if(base.compareTo(Real.MAX_BASE_I)<0) {
-                return ret+(im.num().signum() != -1?"+":"")+realToString.apply(im)+"i";
-            }else{
-                return ret+(im.num().signum() == -1 ? "|-":"|")+ realToString.apply(im.abs());
-            }
+            return ret+(y.signum() == -1 ? "|-":"|")+ realToString.apply(imaginaryPart().abs());
         }
     }
     public String toString(BigInteger base, boolean useSmallBase) {
@@ -136,6 +260,6 @@ public final class Complex extends NumericValue {
 
     @Override
     public String intsAsString() {
-        return re.intsAsString()+"|"+im.intsAsString();
+        return realPart().intsAsString()+"|"+imaginaryPart().intsAsString();
     }
 }
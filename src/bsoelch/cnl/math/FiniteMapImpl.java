@@ -6,127 +6,211 @@ import java.util.function.BinaryOperator;
 import java.util.function.Function;
 
 public final class FiniteMapImpl extends FiniteMap {
-    final TreeMap<MathObject, MathObject> map;
+    /**entries of this map ordered by {@link MathObject#compare(MathObject, MathObject)}*/
+    final PersistentTree map;
+    /**true if no key of this map is mapped to zero,
+     * for maps without zero-values all updates can directly be applied to the tree*/
+    private final boolean zeroFree;
+    /**cached hash code of this map, 0 if the hash code was not calculated yet*/
+    private int hash;
 
     /**constructor of FiniteMapImpl, this method should only be called from {@link FiniteMap#from(Map, int)}*/
     FiniteMapImpl(Map<? extends MathObject, MathObject> map) {
-        this.map=new TreeMap<>(map);
+        if(!(map instanceof SortedMap)){
+            TreeMap<MathObject,MathObject> sorted=new TreeMap<>(MathObject::compare);
+            sorted.putAll(map);
+            map=sorted;
+        }
+        ArrayList<MathObject> keys=new ArrayList<>(map.size()),values=new ArrayList<>(map.size());
+        boolean zeroFree=true;
+        for(Map.Entry<? extends MathObject, MathObject> e:map.entrySet()){
+            keys.add(e.getKey());
+            values.add(e.getValue());
+            zeroFree&=!e.getValue().equals(Real.Int.ZERO);
+        }
+        this.map=PersistentTree.fromSorted(keys,values);
+        this.zeroFree=zeroFree;
+    }
+    private FiniteMapImpl(PersistentTree map) {
+        this.map=map;
+        this.zeroFree=true;
+    }
+    /**map with the entries in tree, all values in the tree have to be nonzero*/
+    private static FiniteMap from(PersistentTree tree){
+        return tree==null?Tuple.EMPTY_MAP:new FiniteMapImpl(tree);
+    }
+    /**copy of the entries of this map in a TreeMap, used for the modification of maps with zero-values*/
+    private TreeMap<MathObject,MathObject> toTreeMap(){
+        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            newMap.put(e.key,e.value);
+        }
+        return newMap;
     }
-
-
 
     @Override
     public int size() {
-        return map.size();
+        return PersistentTree.size(map);
     }
 
+    /**view of the keys of this map*/
+    private Set<MathObject> keySet(){
+        return new AbstractSet<MathObject>() {
+            @Override
+            public Iterator<MathObject> iterator() {
+                Iterator<PersistentTree> itr=PersistentTree.iterator(map);
+                return new Iterator<MathObject>() {
+                    @Override
+                    public boolean hasNext() {
+                        return itr.hasNext();
+                    }
+                    @Override
+                    public MathObject next() {
+                        return itr.next().key;
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return PersistentTree.size(map);
+            }
+        };
+    }
     @Override
     public FiniteSet domain() {
-        return FiniteSet.from(map.keySet());
+        return FiniteSet.from(keySet());
     }
     @Override
     public FiniteSet values() {
-        return FiniteSet.from(new HashSet<>(map.values()));
+        HashSet<MathObject> values=new HashSet<>();
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            values.add(it.next().value);
+        }
+        return FiniteSet.from(values);
     }
 
     @Override
     public MathObject firstKey() {
-        return map.firstKey();
+        if(map==null)
+            throw new NoSuchElementException();
+        return PersistentTree.first(map).key;
     }
     @Override
     public MathObject firstValue() {
-        return map.firstEntry().getValue();
+        return PersistentTree.first(map).value;
     }
     @Override
     public MathObject lastKey() {
-        return map.lastKey();
+        if(map==null)
+            throw new NoSuchElementException();
+        return PersistentTree.last(map).key;
     }
     @Override
     public MathObject lastValue() {
-        return map.lastEntry().getValue();
+        return PersistentTree.last(map).value;
     }
     @Override
     public FiniteMap removeFirst() {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
+        if(zeroFree)
+            return from(PersistentTree.remove(map,firstKey()));
+        TreeMap<MathObject,MathObject> newMap=toTreeMap();
         newMap.remove(newMap.firstKey());
         return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
     }
     @Override
     public FiniteMap removeLast() {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
+        if(zeroFree)
+            return from(PersistentTree.remove(map,lastKey()));
+        TreeMap<MathObject,MathObject> newMap=toTreeMap();
         newMap.remove(newMap.lastKey());
         return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
     }
 
     @Override
     public MathObject insert(MathObject value) {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
         NumericValue maxKey=null;
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
             if(maxKey==null){
-                maxKey=e.getKey().numericValue();
+                maxKey=e.key.numericValue();
             }else{
-                maxKey=NumericValue.max(maxKey,e.getKey().numericValue());
+                maxKey=NumericValue.max(maxKey,e.key.numericValue());
             }
-            newMap.put(e.getKey(),e.getValue());
         }
-        newMap.put(NumericValue.add(maxKey,Real.Int.ONE),value);
-        return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
+        return put(NumericValue.add(maxKey,Real.Int.ONE),value);
     }
     @Override
     public FiniteMap put(MathObject key, MathObject value) {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
+        if(zeroFree){
+            return from(value.equals(Real.Int.ZERO)?PersistentTree.remove(map,key):PersistentTree.put(map,key,value));
+        }
+        TreeMap<MathObject,MathObject> newMap=toTreeMap();
         newMap.put(key, value);
         return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
     }
     @Override
     public FiniteMap remove(MathObject value) {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
-        newMap.values().remove(value);
-        return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
+        //removes the first entry with the given value
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(Objects.equals(e.value,value)){
+                return removeKey(e.key);
+            }
+        }
+        return removeKey(null);
     }
     @Override
     public FiniteMap removeKey(MathObject key) {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
-        newMap.remove(key);
+        if(zeroFree)
+            return from(key==null?map:PersistentTree.remove(map,key));
+        TreeMap<MathObject,MathObject> newMap=toTreeMap();
+        if(key!=null)
+            newMap.remove(key);
         return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
     }
     @Override
     public FiniteMap removeIf(BinaryOperator<MathObject> condition) {
-        TreeMap<MathObject,MathObject> newMap=new TreeMap<>(MathObject::compare);
-        newMap.putAll(map);
-        newMap.entrySet().removeIf(e->MathObject.isTrue(condition.apply(e.getKey(),e.getValue())));
-        return FiniteMap.from(newMap, TUPLE_WRAP_NONE);
+        ArrayList<MathObject> keys=new ArrayList<>(),values=new ArrayList<>();
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(!(MathObject.isTrue(condition.apply(e.key,e.value))||e.value.equals(Real.Int.ZERO))){
+                keys.add(e.key);
+                values.add(e.value);
+            }
+        }
+        return from(PersistentTree.fromSorted(keys,values));
     }
 
     @Override
     public FiniteMap headMap(MathObject last, boolean include) {
-        return FiniteMap.from(map.headMap(last, include), TUPLE_WRAP_NONE);
+        if(zeroFree)
+            return from(PersistentTree.head(map,last,include));
+        return FiniteMap.from(toTreeMap().headMap(last, include), TUPLE_WRAP_NONE);
     }
     @Override
     public FiniteMap tailMap(MathObject first, boolean include) {
-        return FiniteMap.from(map.tailMap(first, include), TUPLE_WRAP_NONE);
+        if(zeroFree)
+            return from(PersistentTree.tail(map,first,include));
+        return FiniteMap.from(toTreeMap().tailMap(first, include), TUPLE_WRAP_NONE);
     }
     @Override
     public FiniteMap range(MathObject first, boolean includeFirst, MathObject last, boolean includeLast) {
         if(MathObject.compare(last,first)<0)
             return Tuple.EMPTY_MAP;
-        return FiniteMap.from(map.subMap(first, includeFirst, last, includeLast), TUPLE_WRAP_NONE);
+        if(zeroFree)
+            return from(PersistentTree.head(PersistentTree.tail(map,first,includeFirst),last,includeLast));
+        return FiniteMap.from(toTreeMap().subMap(first, includeFirst, last, includeLast), TUPLE_WRAP_NONE);
     }
 
-    private Iterator<Pair> wrapIterator(Iterator<Map.Entry<MathObject, MathObject>> mapItr){
+    private Iterator<Pair> wrapIterator(Iterator<PersistentTree> mapItr){
         return new Iterator<Pair>() {
             Pair nextEntry=nextEntry();
             private Pair nextEntry() {
                 nextEntry=null;
                 while (nextEntry==null&&mapItr.hasNext()) {
-                    Map.Entry<MathObject, MathObject> next = mapItr.next();
-                    Pair p = new Pair(next.getKey(),next.getValue());
+                    PersistentTree next = mapItr.next();
+                    Pair p = new Pair(next.key,next.value);
                     if(!p.b.equals(Real.Int.ZERO)){
                         nextEntry=p;
                         break;
@@ -149,40 +233,43 @@ public final class FiniteMapImpl extends FiniteMap {
     }
     @Override
     public Iterator<Pair> mapIterator() {
-        return wrapIterator(map.entrySet().iterator());
+        return wrapIterator(PersistentTree.iterator(map));
     }
 
     @Override
     public NumericValue numericValue() {
-        if(map.isEmpty())
+        if(map==null)
             return Real.Int.ZERO;
-        return map.firstEntry().getValue().numericValue();
+        return firstValue().numericValue();
     }
 
     @Override
     public boolean isTuple() {
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
-            if(!(e.getKey() instanceof Real.Int&&((Real.Int) e.getKey()).num().signum()>=0))
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(!(e.key instanceof Real.Int&&((Real.Int) e.key).num().signum()>=0))
                 return false;
         }
         return true;
     }
     @Override
     public boolean isNumericTuple() {
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
-            if(!(e.getKey() instanceof Real.Int&&((Real.Int) e.getKey()).num().signum()>=0))
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(!(e.key instanceof Real.Int&&((Real.Int) e.key).num().signum()>=0))
                 return false;
-            if(!(e.getValue() instanceof NumericValue))
+            if(!(e.value instanceof NumericValue))
                 return false;
         }
         return true;
     }
     @Override
     public boolean isMatrix() {
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
-            if(!(e.getKey() instanceof Real.Int&&((Real.Int) e.getKey()).num().signum()>=0))
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(!(e.key instanceof Real.Int&&((Real.Int) e.key).num().signum()>=0))
                 return false;
-            if(!(e.getValue() instanceof FiniteMap&&((FiniteMap) e.getValue()).isNumericTuple()))
+            if(!(e.value instanceof FiniteMap&&((FiniteMap) e.value).isNumericTuple()))
                 return false;
         }
         return true;
@@ -194,8 +281,9 @@ public final class FiniteMapImpl extends FiniteMap {
         BigInteger maxElement=BigInteger.ZERO;
         int offSet=0;
         Real.Int key;
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
-            key=e.getKey().numericValue().realPart().round(FLOOR);
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            key=e.key.numericValue().realPart().round(FLOOR);
             if(key.compareTo(Real.Int.ZERO)<0){
                 key=Real.from(offSet++);
             }else{
@@ -205,30 +293,34 @@ public final class FiniteMapImpl extends FiniteMap {
                     key=(Real.Int) Real.add(key,Real.Int.ONE);
                 }
             }
-            tuple.put(key,e.getValue());
+            tuple.put(key,e.value);
             maxElement=key.num();
         }
         return FiniteMap.createTuple(tuple,maxElement.intValueExact()+1);
     }
     @Override
     public Tuple nonzeroElements() {
-        TreeMap<MathObject,MathObject> elements=new TreeMap<>(MathObject::compare);
-        elements.putAll(map);
-        elements.entrySet().removeIf(e->e.getKey().equals(Real.Int.ZERO));
-        return Tuple.create(elements.values().toArray(new MathObject[0]));
+        ArrayList<MathObject> elements=new ArrayList<>(size());
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            if(!e.key.equals(Real.Int.ZERO))
+                elements.add(e.value);
+        }
+        return Tuple.create(elements.toArray(new MathObject[0]));
     }
 
     @Override
     public MathObject evaluateAt(MathObject a) {
-        MathObject o=map.get(a);
-        return o==null?Real.Int.ZERO:o;
+        PersistentTree o=PersistentTree.get(map,a);
+        return o==null?Real.Int.ZERO:o.value;
     }
 
     @Override
     public FiniteMapImpl replace(Function<MathObject, MathObject> f) {
-        HashMap<MathObject, MathObject> newElements=new HashMap<>(map.size());
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
-            newElements.put(e.getKey(),f.apply(e.getValue()));
+        HashMap<MathObject, MathObject> newElements=new HashMap<>(size());
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
+            newElements.put(e.key,f.apply(e.value));
         }
         return (FiniteMapImpl)FiniteMap.from(newElements, TUPLE_WRAP_NONE);
     }
@@ -241,7 +333,17 @@ public final class FiniteMapImpl extends FiniteMap {
         if (!(o instanceof FiniteMap)) return false;
         if(o instanceof FiniteMapImpl){
             FiniteMapImpl that = (FiniteMapImpl) o;
-            return Objects.equals(map, that.map);
+            if(map==that.map)
+                return true;
+            if(size()!=that.size()||hashesDiffer(hash,that.hash))
+                return false;
+            Iterator<PersistentTree> itr1=PersistentTree.iterator(map),itr2=PersistentTree.iterator(that.map);
+            while(itr1.hasNext()){
+                PersistentTree e1=itr1.next(),e2=itr2.next();
+                if(MathObject.compare(e1.key,e2.key)!=0||!e1.value.equals(e2.value))
+                    return false;
+            }
+            return true;
         }else{
             return super.equals(o);
         }
@@ -249,9 +351,15 @@ public final class FiniteMapImpl extends FiniteMap {
 
     @Override
     public int hashCode() {
-        int hash=0;
-        for (Map.Entry<MathObject, MathObject> e:map.entrySet() ) {
-            hash+=Objects.hash(e.getKey(),e.getValue());
+        if(hash==0){
+            int hash=0;
+            for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+                PersistentTree e = it.next();
+                //zero-values are ignored like in mapIterator()
+                if(zeroFree||!e.value.equals(Real.Int.ZERO))
+                    hash+=Objects.hash(e.key,e.value);
+            }
+            this.hash=hash;
         }
         return hash;
     }
@@ -270,12 +378,13 @@ public final class FiniteMapImpl extends FiniteMap {
     }
     private String toString(Function<MathObject,String> objectToString){
         StringBuilder sb=new StringBuilder("{");
-        for(Map.Entry<MathObject, MathObject> e:map.entrySet()){
+        for (Iterator<PersistentTree> it = PersistentTree.iterator(map); it.hasNext(); ) {
+            PersistentTree e = it.next();
             if(sb.length()>1)
                 sb.append(", ");
-            sb.append(objectToString.apply(e.getKey()));
+            sb.append(objectToString.apply(e.key));
             sb.append(" -> ");
-            sb.append(objectToString.apply(e.getValue()));
+            sb.append(objectToString.apply(e.value));
         }
         return sb.append('}').toString();
     }
@@ -6,40 +6,29 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public final class FiniteSet extends MathObject implements Iterable<MathObject>{
-    final static public FiniteSet EMPTY_SET =new FiniteSet(Collections.emptySet());
+    final static public FiniteSet EMPTY_SET =new FiniteSet((PersistentTree)null);
 
+    //set operations are calculated by splitting and joining the trees of the operands,
+    // elements contained in both sets are taken from a
 
     public static FiniteSet intersect(FiniteSet a, FiniteSet b){
-        HashSet<MathObject> newContents=new HashSet<>(a.contents);
-        newContents.removeIf((o->!b.contains(o)));
-        return from(newContents);
+        return from(PersistentTree.intersection(a.contents,b.contents));
     }
     public static FiniteSet unite(FiniteSet a, FiniteSet b){
-        HashSet<MathObject> newContents = new HashSet<>(a.contents);
-        newContents.addAll(b.contents);
-        return from(newContents);
+        return from(PersistentTree.union(a.contents,b.contents));
     }
     public static FiniteSet symmetricDifference(FiniteSet a, FiniteSet b){
-        HashSet<MathObject> newContents=new HashSet<>(a.contents);
-        for(MathObject o: b.contents){
-            if(a.contains(o)){
-                newContents.remove(o);
-            }else{
-                newContents.add(o);
-            }
-        }
-        return from(newContents);
+        return from(PersistentTree.union(PersistentTree.difference(a.contents,b.contents),
+                PersistentTree.difference(b.contents,a.contents)));
     }
     public static FiniteSet difference(FiniteSet a, FiniteSet b){
-        HashSet<MathObject> newContents=new HashSet<>(a.contents);
-        newContents.removeIf(b::contains);
-        return from(newContents);
+        return from(PersistentTree.difference(a.contents,b.contents));
     }
     public static FiniteSet product(FiniteSet a, FiniteSet b){
         HashSet<MathObject> newContents=new HashSet<>(a.size()
                 *b.size());
-        for(MathObject o1: a.contents){
-            for(MathObject o2: b.contents){
+        for(MathObject o1: a){
+            for(MathObject o2: b){
                 newContents.add(new Pair(o1,o2));
             }
         }
@@ -116,43 +105,73 @@ public final class FiniteSet extends MathObject implements Iterable<MathObject>{
             return new FiniteSet(objects);
         }
     }
+    private static FiniteSet from(PersistentTree contents){
+        return contents==null?EMPTY_SET:new FiniteSet(contents);
+    }
 
-    final TreeSet<MathObject> contents;
+    /**elements of this set ordered by {@link MathObject#compare(MathObject, MathObject)},
+     * the values of the tree are not used*/
+    final PersistentTree contents;
+    /**cached hash code of this set, 0 if the hash code was not calculated yet*/
+    private int hash;
 
     FiniteSet(Set<? extends MathObject> contents) {
-        this.contents = new TreeSet<>(MathObject::compare);
-        this.contents.addAll(contents);
+        //sort elements, if multiple elements are equal (with respect to compare) the first element is used
+        MathObject[] elements=contents.toArray(new MathObject[0]);
+        Arrays.sort(elements,MathObject::compare);
+        ArrayList<MathObject> sorted=new ArrayList<>(elements.length);
+        for(MathObject e:elements){
+            if(sorted.isEmpty()||MathObject.compare(sorted.get(sorted.size()-1),e)!=0)
+                sorted.add(e);
+        }
+        this.contents = PersistentTree.fromSorted(sorted,null);
+    }
+    private FiniteSet(PersistentTree contents) {
+        this.contents = contents;
     }
 
+    private static Iterator<MathObject> keyIterator(PersistentTree tree) {
+        Iterator<PersistentTree> itr=PersistentTree.iterator(tree);
+        return new Iterator<MathObject>() {
+            @Override
+            public boolean hasNext() {
+                return itr.hasNext();
+            }
+            @Override
+            public MathObject next() {
+                return itr.next().key;
+            }
+        };
+    }
     @Override
     public Iterator<MathObject> iterator() {
-        return contents.iterator();
+        return keyIterator(contents);
     }
 
     public Iterator<MathObject> tailIterator(MathObject slice,boolean inclusive) {
-        return contents.tailSet(slice,inclusive).iterator();
+        return keyIterator(PersistentTree.tail(contents,slice,inclusive));
     }
 
     public Iterator<MathObject> headIterator(MathObject slice,boolean inclusive) {
-        return contents.headSet(slice,inclusive).iterator();
+        return keyIterator(PersistentTree.head(contents,slice,inclusive));
     }
 
     public int size() {
-        return contents.size();
+        return PersistentTree.size(contents);
     }
 
     public boolean contains(MathObject aMathObject) {
-        return contents.contains(aMathObject);
+        return PersistentTree.get(contents,aMathObject)!=null;
     }
 
     @Override
     public NumericValue numericValue() {
-        return contents.isEmpty()?Real.Int.ZERO: contents.last().numericValue();
+        return contents==null?Real.Int.ZERO: PersistentTree.last(contents).key.numericValue();
     }
 
     public  FiniteMap asMap(){
         TreeMap<MathObject,TreeSet<MathObject>> entries=new TreeMap<>(MathObject::compare);
-        for(MathObject e:contents){
+        for(MathObject e:this){
             if (e instanceof Tuple&&((Tuple) e).length()>0) {
                 TreeSet<MathObject> prev=entries.get(((Tuple)e).get(0));
                 if(prev==null){
@@ -180,43 +199,48 @@ public final class FiniteSet extends MathObject implements Iterable<MathObject>{
     }
 
     public Tuple asTuple() {
-        return Tuple.create(contents.toArray(new MathObject[0]));
+        MathObject[] elements=new MathObject[size()];
+        int i=0;
+        for(MathObject e:this){
+            elements[i++]=e;
+        }
+        return Tuple.create(elements);
     }
 
     public MathObject getFirst(){
-        return contents.first();
+        if(contents==null)
+            throw new NoSuchElementException();
+        return PersistentTree.first(contents).key;
     }
     public MathObject getLast(){
-        return contents.first();
+        return getFirst();
     }
     public FiniteSet removeFirst(){
-        TreeSet<MathObject> newContents=new TreeSet<>(MathObject::compare);
-        newContents.addAll(contents);
-        newContents.remove(newContents.first());
-        return from(newContents);
+        return from(PersistentTree.remove(contents,getFirst()));
     }
     public FiniteSet removeLast(){
-        TreeSet<MathObject> newContents=new TreeSet<>(MathObject::compare);
-        newContents.addAll(contents);
-        newContents.remove(newContents.last());
-        return from(newContents);
+        if(contents==null)
+            throw new NoSuchElementException();
+        return from(PersistentTree.remove(contents,PersistentTree.last(contents).key));
     }
     public FiniteSet headSet(MathObject slice,boolean include){
-        return from(contents.headSet(slice,include));
+        return from(PersistentTree.head(contents,slice,include));
     }
     public FiniteSet tailSet(MathObject slice,boolean include){
-        return from(contents.tailSet(slice,include));
+        return from(PersistentTree.tail(contents,slice,include));
     }
     public FiniteSet range(MathObject first,boolean includeFirst,MathObject last,boolean includeLast){
         if(MathObject.compare(last,first)<0)
             return EMPTY_SET;
-        return from(contents.subSet(first,includeFirst,last,includeLast));
+        return from(PersistentTree.head(PersistentTree.tail(contents,first,includeFirst),last,includeLast));
     }
     public FiniteSet removeIf(Function<MathObject,MathObject> condition){
-        TreeSet<MathObject> newContents=new TreeSet<>(MathObject::compare);
-        newContents.addAll(contents);
-        newContents.removeIf(e->MathObject.isTrue(condition.apply(e)));
-        return from(newContents);
+        ArrayList<MathObject> newContents=new ArrayList<>();
+        for(MathObject e:this){
+            if(!MathObject.isTrue(condition.apply(e)))
+                newContents.add(e);
+        }
+        return from(PersistentTree.fromSorted(newContents,null));
     }
 
     @Override
@@ -224,12 +248,28 @@ public final class FiniteSet extends MathObject implements Iterable<MathObject>{
         if (this == o) return true;
         if (!(o instanceof FiniteSet)) return false;
         FiniteSet that = (FiniteSet) o;
-        return Objects.equals(contents, that.contents);
+        if(contents==that.contents)
+            return true;
+        if(size()!=that.size()||hashesDiffer(hash,that.hash))
+            return false;
+        Iterator<MathObject> itr=that.iterator();
+        for(MathObject e:this){
+            if(MathObject.compare(e,itr.next())!=0)
+                return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(contents);
+        if(hash==0){
+            int hash=0;
+            for(MathObject e:this){
+                hash+=e.hashCode();
+            }
+            this.hash=31+hash;//same value as Objects.hash(Set)
+        }
+        return hash;
     }
 
 
@@ -261,7 +301,7 @@ public final class FiniteSet extends MathObject implements Iterable<MathObject>{
     }
     private String toString(Function<MathObject,String> objectToString){
         StringBuilder sb=new StringBuilder("{");
-        for(MathObject o:contents){
+        for(MathObject o:this){
             if(sb.length()>1)
                 sb.append(", ");
             sb.append(objectToString.apply(o));
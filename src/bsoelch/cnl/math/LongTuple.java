@@ -0,0 +1,353 @@
+package bsoelch.cnl.math;
+
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+
+/**Tuple of integers that fit into a long, the elements are stored in a long[] instead of an array of {@link Real.Int}.
+ * Tuples created by appending elements share their buffer with the original Tuple,
+ * operations that create elements that are not small integers are delegated to an array backed Tuple*/
+final class LongTuple extends Tuple{
+    /**buffer containing the elements of this tuple at the indices 0 to length-1,
+     * the elements after length may belong to other tuples sharing the same buffer*/
+    private final long[] values;
+    private final int length;
+    private final int nonZeros;
+    /**number of elements of the buffer that are used by any of the tuples sharing the buffer*/
+    private final AtomicInteger used;
+    /**cached hash code of this tuple, 0 if the hash code was not calculated yet*/
+    private int hash;
+
+    private LongTuple(long[] values, int length, int nonZeros, AtomicInteger used) {
+        this.values = values;
+        this.length = length;
+        this.nonZeros = nonZeros;
+        this.used = used;
+    }
+
+    private static boolean isSmallInt(MathObject o){
+        return o instanceof Real.Int&&((Real.Int) o).isSmall();
+    }
+    /**@return true if all objects are small integers and there are not 2 objects (as those are stored in a {@link Pair})*/
+    static boolean isLongTuple(MathObject[] objects){
+        if(objects.length==2)
+            return false;
+        for(MathObject o:objects){
+            if(!isSmallInt(o))
+                return false;
+        }
+        return true;
+    }
+    /**@param objects the elements of the Tuple, all elements have to be small integers*/
+    static LongTuple from(MathObject[] objects){
+        long[] values=new long[objects.length];
+        int nz=0;
+        for(int i=0;i<objects.length;i++){
+            values[i]=((Real.Int)objects[i]).longValueExact();
+            if(values[i]!=0)
+                nz++;
+        }
+        return new LongTuple(values,values.length,nz,new AtomicInteger(values.length));
+    }
+    /**creates a Tuple with the given elements, the same way {@link Tuple#create(MathObject[])} would*/
+    private static Tuple create(long[] values){
+        int nz=0;
+        for(long v:values){
+            if(v!=0)
+                nz++;
+        }
+        if(values.length==0||values.length==2||isSparse(values.length,nz)){
+            MathObject[] objects=new MathObject[values.length];
+            for(int i=0;i<values.length;i++){
+                objects[i]=Real.from(values[i]);
+            }
+            return Tuple.create(objects);
+        }
+        return new LongTuple(values,values.length,nz,new AtomicInteger(values.length));
+    }
+    private static boolean isSparse(long length, long nonZeros){
+        return length>3&&SPARSE_FACTOR*nonZeros<length;
+    }
+
+    /**element-wise operation of a LongTuple and a small integer, computed directly on the long values
+     * @param op operation on longs, has to throw an ArithmeticException if the result does not fit into a long
+     * @return the result of the operation, or null if the operands are not a LongTuple and a small integer
+     *          or the result does not fit into a long*/
+    static Tuple scalarOperation(MathObject l, MathObject r, LongBinaryOperator op){
+        if(l instanceof LongTuple&&isSmallInt(r)){
+            return ((LongTuple) l).scalarOperation(((Real.Int) r).longValueExact(),op,false);
+        }else if(r instanceof LongTuple&&isSmallInt(l)){
+            return ((LongTuple) r).scalarOperation(((Real.Int) l).longValueExact(),op,true);
+        }
+        return null;
+    }
+    private Tuple scalarOperation(long scalar, LongBinaryOperator op, boolean scalarFirst){
+        long[] res=new long[length];
+        try{
+            if(scalarFirst){
+                for(int i=0;i<length;i++)
+                    res[i]=op.applyAsLong(scalar,values[i]);
+            }else{
+                for(int i=0;i<length;i++)
+                    res[i]=op.applyAsLong(values[i],scalar);
+            }
+        }catch (ArithmeticException overflow){
+            return null;
+        }
+        return create(res);
+    }
+
+    @Override
+    public NumericValue numericValue() {
+        return get(0).numericValue();
+    }
+
+    @Override
+    public int size() {
+        return nonZeros;
+    }
+    @Override
+    public int length(){
+        return length;
+    }
+
+    @Override
+    public MathObject get(int i){
+        if(i<0||i>=length)
+            return Real.Int.ZERO;
+        return Real.from(values[i]);
+    }
+
+    /**@return this Tuple with the given values appended at the end,
+     * the values are written to the shared buffer if no other tuple uses the elements after this tuple*/
+    private LongTuple append(long[] newValues, int newNonZeros){
+        int newLength=length+newValues.length;
+        if(newLength<=values.length&&used.compareAndSet(length,newLength)){
+            System.arraycopy(newValues,0,values,length,newValues.length);
+            return new LongTuple(values,newLength,nonZeros+newNonZeros,used);
+        }
+        long[] buffer=Arrays.copyOf(values,Math.max(newLength,length+(length>>1)));
+        System.arraycopy(newValues,0,buffer,length,newValues.length);
+        return new LongTuple(buffer,newLength,nonZeros+newNonZeros,new AtomicInteger(newLength));
+    }
+    /**concatenation of this Tuple and the elements of b
+     * @return the concatenated tuple, or null if the result is not stored as LongTuple*/
+    LongTuple concat(MathObject b){
+        long[] newValues;
+        if(b instanceof LongTuple){
+            newValues=Arrays.copyOf(((LongTuple) b).values,((LongTuple) b).length);
+        }else if(b instanceof Tuple){
+            newValues=new long[((Tuple) b).length()];
+            int i=0;
+            for(MathObject o:(Tuple)b){
+                if(!isSmallInt(o))
+                    return null;
+                newValues[i++]=((Real.Int)o).longValueExact();
+            }
+        }else if(isSmallInt(b)){
+            newValues=new long[]{((Real.Int)b).longValueExact()};
+        }else{
+            return null;
+        }
+        int nz=0;
+        for(long v:newValues){
+            if(v!=0)
+                nz++;
+        }
+        if(length+newValues.length==2||isSparse(length+newValues.length,nonZeros+nz))
+            return null;
+        return append(newValues,nz);
+    }
+
+    /**array backed Tuple with the same elements, used for all operations without a specialized implementation*/
+    private NTuple asArrayTuple(){
+        return new NTuple(toArray());
+    }
+
+    @Override
+    public MathObject insert(MathObject value) {
+        LongTuple ret=concat(value==null?Real.Int.ZERO:value);
+        return ret!=null?ret:asArrayTuple().insert(value);
+    }
+    @Override
+    public FiniteMap put(MathObject key, MathObject value) {
+        return asArrayTuple().put(key, value);
+    }
+    @Override
+    public Tuple insert(MathObject value, int index) {
+        if(index==length&&value!=null){
+            LongTuple ret=concat(value);
+            if(ret!=null)
+                return ret;
+        }
+        return asArrayTuple().insert(value, index);
+    }
+    @Override
+    public FiniteMap remove(int index) {
+        if(index==length-1&&length>3){//tuples with less than 3 elements are not stored as LongTuple
+            int nz=values[index]==0?nonZeros:nonZeros-1;
+            if(!isSparse(length-1,nz))
+                return new LongTuple(values,length-1,nz,used);
+        }
+        return asArrayTuple().remove(index);
+    }
+    @Override
+    public FiniteMap remove(MathObject value) {
+        return asArrayTuple().remove(value);
+    }
+    @Override
+    public Tuple tupleRemove(MathObject value) {
+        return asArrayTuple().tupleRemove(value);
+    }
+    @Override
+    public FiniteMap removeKey(MathObject key) {
+        return asArrayTuple().removeKey(key);
+    }
+    @Override
+    public FiniteMap removeIf(BinaryOperator<MathObject> condition) {
+        return asArrayTuple().removeIf(condition);
+    }
+    @Override
+    public FiniteMap headMap(MathObject last, boolean include) {
+        NTuple view=asArrayTuple();
+        FiniteMap ret=view.headMap(last, include);
+        return ret==view?this:ret;
+    }
+    @Override
+    public FiniteMap tailMap(MathObject first, boolean include) {
+        NTuple view=asArrayTuple();
+        FiniteMap ret=view.tailMap(first, include);
+        return ret==view?this:ret;
+    }
+    @Override
+    public FiniteMap range(MathObject first, boolean includeFirst, MathObject last, boolean includeLast) {
+        return asArrayTuple().range(first, includeFirst, last, includeLast);
+    }
+
+    @Override
+    public Iterator<MathObject> iterator() {
+        return new Iterator<MathObject>() {
+            int i=0;
+            @Override
+            public boolean hasNext() {
+                return i<length;
+            }
+            @Override
+            public MathObject next() {
+                if(i>=length)
+                    throw new NoSuchElementException();
+                return Real.from(values[i++]);
+            }
+        };
+    }
+
+    @Override
+    public MathObject[] toArray() {
+        MathObject[] ret=new MathObject[length];
+        for(int i=0;i<length;i++){
+            ret[i]=Real.from(values[i]);
+        }
+        return ret;
+    }
+
+    @Override
+    public <T extends MathObject> T[] toArray(Class<T[]> cls) {
+        return Arrays.copyOf(toArray(),length,cls);
+    }
+
+    @Override
+    public Tuple replace(Function<MathObject, MathObject> f) {
+        MathObject[] newObjects=new MathObject[length];
+        for(int i=0;i<length;i++){
+            newObjects[i]=f.apply(Real.from(values[i]));
+        }
+        return Tuple.create(newObjects);
+    }
+
+    @Override
+    public FiniteSet domain() {
+        return asArrayTuple().domain();
+    }
+
+    @Override
+    public FiniteSet values() {
+        return FiniteSet.from(toArray());
+    }
+
+    @Override
+    public MathObject evaluateAt(MathObject a) {
+        if(a instanceof Real.Int){
+            BigInteger value=((Real.Int) a).num();
+            if(value.compareTo(BigInteger.ZERO)>=0&&value.compareTo(BigInteger.valueOf(length))<0){
+                return get(value.intValueExact());
+            }
+        }
+        return Real.Int.ZERO;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if(o instanceof Matrix)
+            o=((Matrix) o).asMap();
+        if (!(o instanceof FiniteMap)) return false;
+        if(o instanceof LongTuple&&((LongTuple) o).length==length){
+            LongTuple that=(LongTuple) o;
+            if(nonZeros!=that.nonZeros||hashesDiffer(hash,that.hash))
+                return false;
+            for(int i=0;i<length;i++){
+                if(values[i]!=that.values[i])
+                    return false;
+            }
+            return true;
+        }else if((o instanceof VectorTuple||o instanceof NTuple)&&((Tuple) o).length()==length) {
+            if(((Tuple) o).size()!=nonZeros)
+                return false;
+            Iterator<MathObject> itr=((Tuple) o).iterator();
+            for(MathObject e:this){
+                if(!e.equals(itr.next()))
+                    return false;
+            }
+            return true;
+        }else {
+            return super.equals(o);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        if(hash==0){
+            int hash=0;
+            for (int i=0;i<length;i++) {
+                if(values[i]!=0) {
+                    hash += 31*(31+Real.from(i).hashCode())+Real.from(values[i]).hashCode();//Objects.hash(i,values[i])
+                }
+            }
+            this.hash=hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString(BigInteger base, boolean useSmallBase) {
+        return asArrayTuple().toString(base, useSmallBase);
+    }
+    @Override
+    public String toStringFixedPoint(BigInteger base, Real precision, boolean useSmallBase) {
+        return asArrayTuple().toStringFixedPoint(base, precision, useSmallBase);
+    }
+    @Override
+    public String toStringFloat(BigInteger base, Real precision, boolean useSmallBase) {
+        return asArrayTuple().toStringFloat(base, precision, useSmallBase);
+    }
+    @Override
+    public String intsAsString() {
+        return asArrayTuple().intsAsString();
+    }
+}
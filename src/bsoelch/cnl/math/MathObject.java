@@ -428,6 +428,79 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
             return ret;
         }
     }
+    /**reduces the objects by combining adjacent pairs until only one object is left,
+     * for set operations this keeps the operands of each step at similar sizes
+     * @param reduce associative operation*/
+    public static MathObject nAryReduceBalanced(MathObject[] objects, MathObject nilaryValue, BinaryOperator<MathObject> reduce){
+        if(objects.length==0)
+            return nilaryValue;
+        objects=objects.clone();
+        for(int n=objects.length;n>1;n=(n+1)/2){
+            for(int i=0;i+1<n;i+=2){
+                objects[i/2]=reduce.apply(objects[i],objects[i+1]);
+            }
+            if(n%2==1)
+                objects[n/2]=objects[n-1];
+        }
+        return objects[0];
+    }
+    /**sum of the given objects, sums of real numbers are calculated with {@link Real#sum(List)}*/
+    public static MathObject nArySum(MathObject[] objects){
+        List<Real> reals=asReals(Arrays.asList(objects));
+        return reals==null?nAryReduce(objects,Real.Int.ZERO,MathObject::add):Real.sum(reals);
+    }
+    /**product of the given objects, products of real numbers are calculated with {@link Real#product(List)}*/
+    public static MathObject nAryProduct(MathObject[] objects){
+        List<Real> reals=asReals(Arrays.asList(objects));
+        return reals==null?nAryReduce(objects,Real.Int.ONE,MathObject::multiply):Real.product(reals);
+    }
+    /**deep sum of the given objects, sums of real numbers are calculated with {@link Real#sum(List)}*/
+    public static NumericValue deepNArySum(MathObject[] objects){
+        ArrayList<NumericValue> elements=new ArrayList<>();
+        for(MathObject o:objects)
+            deepCollect(o,elements);
+        List<Real> reals=asReals(elements);
+        return reals==null?deepNAryReduce(objects,Real.Int.ZERO, NumericValue::add):Real.sum(reals);
+    }
+    /**deep product of the given objects, products of real numbers are calculated with {@link Real#product(List)}*/
+    public static NumericValue deepNAryProduct(MathObject[] objects){
+        ArrayList<NumericValue> elements=new ArrayList<>();
+        for(MathObject o:objects)
+            deepCollect(o,elements);
+        List<Real> reals=asReals(elements);
+        return reals==null?deepNAryReduce(objects,Real.Int.ONE, NumericValue::multiply):Real.product(reals);
+    }
+    /**@return the given objects as a List of Reals, or null if one of the objects is not a real number*/
+    private static List<Real> asReals(List<? extends MathObject> objects){
+        ArrayList<Real> reals=new ArrayList<>(objects.size());
+        for(MathObject o:objects){
+            if(!(o instanceof Real))
+                return null;
+            reals.add((Real)o);
+        }
+        return reals;
+    }
+    /**collects all values that are combined in {@link #deepNAryReduce(MathObject[], NumericValue, BinaryOperator)},
+     * empty containers (that are reduced to the neutral element) are ignored*/
+    private static void deepCollect(MathObject o, List<NumericValue> target){
+        if(o instanceof NumericValue) {
+            target.add((NumericValue)o);
+        }else if(o instanceof Matrix){
+            for (Iterator<NumericValue> it = ((Matrix) o).sparseIterator(); it.hasNext();) {
+                target.add(it.next());
+            }
+        }else if(o instanceof FiniteSet){
+            for(MathObject e:((FiniteSet) o)){
+                deepCollect(e,target);
+            }
+        }else if(o instanceof FiniteMap){
+            for(MathObject e:((FiniteMap) o).values()){
+                deepCollect(e,target);
+            }
+        }else{
+            throw new RuntimeException("Unexpected MathObject class:"+o.getClass());
+        }
+    }
     public static NumericValue deepNAryReduce(MathObject[] objects, NumericValue nilaryValue, BinaryOperator<NumericValue> reduce){
         if(objects.length==0) {
             return nilaryValue;
@@ -485,7 +558,8 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
     }
 
     public static MathObject add(MathObject l, MathObject r) {
-        return deepCombineNumbers(l,r, NumericValue::add);
+        Tuple res=LongTuple.scalarOperation(l,r,Math::addExact);
+        return res!=null?res:deepCombineNumbers(l,r, NumericValue::add);
     }
     public static MathObject subtract(MathObject l, MathObject r) {
         return deepCombineNumbers(l,r, NumericValue::subtract);
@@ -496,7 +570,8 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
 
 
     public static MathObject multiply(MathObject l, MathObject r) {
-        return deepCombineNumbers(l,r, NumericValue::multiply);
+        Tuple res=LongTuple.scalarOperation(l,r,Math::multiplyExact);
+        return res!=null?res:deepCombineNumbers(l,r, NumericValue::multiply);
     }
 
     public static Real sqAbs(MathObject o) {
@@ -540,7 +615,8 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
     }
 
     public static MathObject floorAnd(MathObject l, MathObject r) {
-        return deepCombineNumbers(l,r, NumericValue::floorAnd);
+        Tuple res=LongTuple.scalarOperation(l,r,(a,b)->a&b);
+        return res!=null?res:deepCombineNumbers(l,r, NumericValue::floorAnd);
     }
     public static MathObject floorOr(MathObject l, MathObject r) {
         return deepCombineNumbers(l,r, NumericValue::floorOr);
@@ -680,6 +756,15 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
             s+=1;
         }
         if(l<Tuple.SPARSE_FACTOR*s){
+            if(a instanceof VectorTuple){//append the elements of b without copying a
+                VectorTuple concat=((VectorTuple) a).concat(b);
+                if(concat!=null)
+                    return concat;
+            }else if(a instanceof LongTuple){
+                LongTuple concat=((LongTuple) a).concat(b);
+                if(concat!=null)
+                    return concat;
+            }
             MathObject[] objects=new MathObject[l];
             if(a instanceof Tuple){
                 System.arraycopy(((Tuple) a).toArray(),0,objects,0,l=((Tuple) a).length());
@@ -936,7 +1021,16 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
     }
 
 
+    /**@param hash1 cached hash code of the first object, 0 if the hash code was not calculated yet
+     * @param hash2 cached hash code of the second object, 0 if the hash code was not calculated yet
+     * @return true if both hash codes are known and different, in this case the objects cannot be equal*/
+    static boolean hashesDiffer(int hash1, int hash2){
+        return hash1!=0&&hash2!=0&&hash1!=hash2;
+    }
+
     public static int compare(MathObject a, MathObject b){
+        if(a==b)
+            return 0;
         if(a instanceof LambdaExpression){
             if(b instanceof LambdaExpression){
                 return ((LambdaExpression)a).compareTo((LambdaExpression)b);
@@ -981,6 +1075,8 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
             if(b instanceof NumericValue){
                 return -compare(b,a);
             }else if(b instanceof FiniteSet){
+                if(((FiniteSet) a).contents==((FiniteSet) b).contents)
+                    return 0;
                 Iterator<MathObject> itr1=((FiniteSet) a).iterator();
                 Iterator<MathObject> itr2=((FiniteSet) b).iterator();
                 return compareItr(itr1,itr2);
@@ -999,6 +1095,8 @@ public abstract class MathObject implements ExpressionNode {//addLater? ElementV
                 int c=compareItr(itr1,itr2);
                 return c==0?1:c;
             }else if(b instanceof FiniteMap){
+                if(a instanceof FiniteMapImpl&&b instanceof FiniteMapImpl&&((FiniteMapImpl) a).map==((FiniteMapImpl) b).map)
+                    return 0;
                 Iterator<Pair> itr1=((FiniteMap) a).mapIterator();
                 Iterator<Pair> itr2=((FiniteMap) b).mapIterator();
                 return compareItrMap(itr1,itr2);
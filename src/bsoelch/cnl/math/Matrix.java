@@ -127,6 +127,8 @@ public final class Matrix extends MathObject implements Iterable<NumericValue> {
         TreeMap<MathObject,MathObject> rows=new TreeMap<>(MathObject::compare);
         int maxLength=0;
         for(MutableTuple.TupleEntry<MutableTuple<NumericValue>> row:ret){
+            if(row.value==null)
+                continue;//empty row
             rows.put(Real.from(row.index),row.value.toTuple());
             maxLength=Math.max(maxLength,row.value.length());
         }
@@ -189,7 +191,7 @@ public final class Matrix extends MathObject implements Iterable<NumericValue> {
         boolean hasRow =false;//true if there is a nonempty row in the result (for ensuring correct size of result)
         for (Iterator<Pair> it = a.rowIterator(); it.hasNext(); ) {//rowA
             Pair rA = it.next();
-            Iterator<Pair> colA = ((FiniteMap) rA.b).mapIterator();
+            Iterator<Pair> colA = entryIterator((FiniteMap) rA.b);
             Pair eA=colA.hasNext()?colA.next():null;
             Iterator<Pair> rowB = b.rowIterator();
             Pair rB=rowB.hasNext()?rowB.next():null;
@@ -202,7 +204,7 @@ public final class Matrix extends MathObject implements Iterable<NumericValue> {
                     rB=rowB.hasNext()?rowB.next():null;
                 }else{
                     int x = ((Real.Int) rA.a).num().intValueExact();
-                    for (Iterator<Pair> iter = ((FiniteMap) rB.b).mapIterator(); iter.hasNext(); ) {//colB
+                    for (Iterator<Pair> iter = entryIterator((FiniteMap) rB.b); iter.hasNext(); ) {//colB
                         Pair eB = iter.next();
                         int y = ((Real.Int) eB.a).num().intValueExact();
                         NumericValue v=NumericValue.multiply((NumericValue)eA.b,(NumericValue)eB.b);
@@ -232,6 +234,59 @@ public final class Matrix extends MathObject implements Iterable<NumericValue> {
         return fromMutableTuple(res);
     }
 
+    /**iterates over the non-zero entries of the given map,
+     * the entries of full Tuples are iterated by index,
+     * as the keys returned by {@link Tuple#mapIterator()} are shifted by one*/
+    private static Iterator<Pair> entryIterator(FiniteMap map){
+        if(!(map instanceof Tuple&&((Tuple) map).isFullTuple()))
+            return map.mapIterator();
+        Tuple tuple=(Tuple)map;
+        return new Iterator<Pair>() {
+            int i=nextIndex(0);
+
+            private int nextIndex(int i){
+                while(i<tuple.length()&&tuple.get(i).equals(Real.Int.ZERO))
+                    i++;
+                return i;
+            }
+            @Override
+            public boolean hasNext() {
+                return i<tuple.length();
+            }
+            @Override
+            public Pair next() {
+                if(i>=tuple.length())
+                    throw new NoSuchElementException();
+                Pair ret=new Pair(Real.from(i),tuple.get(i));
+                i=nextIndex(i+1);
+                return ret;
+            }
+        };
+    }
+
+    /**calculates a^power for a square matrix a by repeated squaring,
+     * negative powers are calculated as powers of the inverse matrix*/
+    public static Matrix matrixPow(Matrix a, BigInteger power) {
+        if(a.rows!=a.columns)
+            throw new ArithmeticException("tried to calculate power of non square matrix");
+        if(power.signum()==0){
+            return identityMatrix(a.rows);
+        }else if(power.signum()<0){
+            a=a.invert();
+            power=power.negate();
+        }
+        Matrix ret=null;
+        while(true){
+            if(power.testBit(0)){
+                ret= ret==null?a:matrixMultiply(ret,a);
+            }
+            power=power.shiftRight(1);
+            if(power.signum()==0)
+                return ret;
+            a=matrixMultiply(a,a);//no squaring after the last bit
+        }
+    }
+
     /**Preforms the gaussian Algorithm on target
      * @param applicant optional (may be null) second matrix that is transformed in the same way as target*/
     static void gaussianAlgorithm(MutableTuple<MutableTuple<NumericValue>> target,
@@ -511,7 +566,7 @@ public final class Matrix extends MathObject implements Iterable<NumericValue> {
      *  returns pairs with the rowid in the first component and the row in the second*/
     public Iterator<Pair> rowIterator() {
         return new Iterator<Pair>() {
-            final Iterator<Pair> rowItr=data.mapIterator();
+            final Iterator<Pair> rowItr=entryIterator(data);
             Pair nextRow=nextRow();
 
             private Pair nextRow(){
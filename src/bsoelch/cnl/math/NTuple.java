@@ -9,6 +9,8 @@ import java.util.function.Function;
 final class NTuple extends Tuple{
     final MathObject[] objects;
     final int nonZeros;
+    /**cached hash code of this tuple, 0 if the hash code was not calculated yet*/
+    private int hash;
 
     NTuple(MathObject[] objects) {
         this.objects = objects;
@@ -255,6 +257,8 @@ final class NTuple extends Tuple{
         if (!(o instanceof FiniteMap)) return false;
         if(o instanceof NTuple&&((NTuple) o).length()==length()) {
             NTuple nTuple = (NTuple) o;
+            if(nonZeros!=nTuple.nonZeros||hashesDiffer(hash,nTuple.hash))
+                return false;
             return Arrays.equals(objects, nTuple.objects);
         }else {
             return super.equals(o);
@@ -263,11 +267,14 @@ final class NTuple extends Tuple{
 
     @Override
     public int hashCode() {
-        int hash=0;
-        for (int i=0;i<objects.length;i++ ) {
-            if(!objects[i].equals(Real.Int.ZERO)) {
-                hash += Objects.hash(Real.from(i), objects[i]);
+        if(hash==0){
+            int hash=0;
+            for (int i=0;i<objects.length;i++ ) {
+                if(!objects[i].equals(Real.Int.ZERO)) {
+                    hash += Objects.hash(Real.from(i), objects[i]);
+                }
             }
+            this.hash=hash;
         }
         return hash;
     }
@@ -77,15 +77,15 @@ public abstract class NumericValue extends MathObject implements Comparable<Nume
             if(b instanceof Real){
                 return Real.add((Real)a,(Real)b);
             }else if(b instanceof Complex){
-                return Complex.from(Real.add((Real)a,b.realPart()),b.imaginaryPart());
+                return Complex.addComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
         }else if(a instanceof Complex){
             if(b instanceof Real){
-                return Complex.from(Real.add(a.realPart(),(Real)b),a.imaginaryPart());
+                return Complex.addComplex(a,b);
             }else if(b instanceof Complex){
-                return Complex.from(Real.add(a.realPart(),b.realPart()),Real.add(a.imaginaryPart(),b.imaginaryPart()));
+                return Complex.addComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
@@ -99,15 +99,15 @@ public abstract class NumericValue extends MathObject implements Comparable<Nume
             if(b instanceof Real){
                 return Real.subtract((Real)a,(Real)b);
             }else if(b instanceof Complex){
-                return Complex.from(Real.subtract((Real)a,b.realPart()),b.imaginaryPart().negate());
+                return Complex.addComplex(a,b.negate());
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
         }else if(a instanceof Complex){
             if(b instanceof Real){
-                return Complex.from(Real.subtract(a.realPart(),(Real)b),a.imaginaryPart());
+                return Complex.addComplex(a,((Real)b).negate());
             }else if(b instanceof Complex){
-                return Complex.from(Real.subtract(a.realPart(),b.realPart()),Real.subtract(a.imaginaryPart(),b.imaginaryPart()));
+                return Complex.addComplex(a,b.negate());
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
@@ -121,16 +121,15 @@ public abstract class NumericValue extends MathObject implements Comparable<Nume
             if(b instanceof Real){
                 return Real.multiply((Real)a,(Real)b);
             }else if(b instanceof Complex){
-                return Complex.from(Real.multiply((Real)a,b.realPart()),Real.multiply((Real)a,b.imaginaryPart()));
+                return Complex.multiplyComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
         }else if(a instanceof Complex){
             if(b instanceof Real){
-                return Complex.from(Real.multiply(a.realPart(),(Real)b),Real.multiply(a.imaginaryPart(),(Real)b));
+                return Complex.multiplyComplex(a,b);
             }else if(b instanceof Complex){
-                return Complex.from(Real.subtract(Real.multiply(a.realPart(),b.realPart()), Real.multiply(a.imaginaryPart(),b.imaginaryPart())),
-                        Real.add(Real.multiply(a.realPart(),b.imaginaryPart()), Real.multiply(a.imaginaryPart(),b.realPart())));
+                return Complex.multiplyComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
@@ -144,15 +143,15 @@ public abstract class NumericValue extends MathObject implements Comparable<Nume
             if(b instanceof Real){
                 return Real.divide((Real)a,(Real)b);
             }else if(b instanceof Complex){
-                return multiply(a,b.invert());
+                return Complex.divideComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
         }else if(a instanceof Complex){
             if(b instanceof Real){
-                return Complex.from(Real.divide(a.realPart(),(Real)b),Real.divide(a.imaginaryPart(),(Real)b));
+                return Complex.divideComplex(a,b);
             }else if(b instanceof Complex){
-                return multiply(a,b.invert());
+                return Complex.divideComplex(a,b);
             }else{
                 throw new IllegalArgumentException("Unexpected Scalar-class:"+b.getClass());
             }
@@ -382,16 +381,24 @@ public abstract class NumericValue extends MathObject implements Comparable<Nume
             return l.equals(Real.Int.ZERO)?Real.Int.ZERO:Real.Int.ONE;
         }else if(power.signum()<0){
             return powBigInt(l,power.negate()).invert();
-        }else{
-            NumericValue ret= Real.Int.ONE,s= l;
-            while(power.signum()>0){
-                if(power.and(BigInteger.ONE).equals(BigInteger.ONE)){
-                    ret= multiply(ret,s);
-                }
-                s= multiply(s,s);
-                power = power.shiftRight(1);
+        }else if(power.bitLength()<32){
+            int n=power.intValue();
+            if(l instanceof Real){
+                return Real.pow((Real)l,n);
+            }else if(l instanceof Complex){
+                return ((Complex)l).pow(n);
+            }
+        }
+        //powers that do not fit into an int are only computable for 0, 1 and -1
+        NumericValue ret= Real.Int.ONE,s= l;
+        while(true){
+            if(power.testBit(0)){
+                ret= multiply(ret,s);
             }
-            return ret;
+            power = power.shiftRight(1);
+            if(power.signum()==0)
+                return ret;
+            s= multiply(s,s);//no squaring after the last bit
         }
     }
 
@@ -0,0 +1,243 @@
+package bsoelch.cnl.math;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**Node of a persistent treap ordered by {@link MathObject#compare(MathObject, MathObject)},
+ * the empty tree is represented by null.
+ * Trees are never modified, all updates copy the path to the changed nodes
+ * and share all other nodes with the original tree*/
+final class PersistentTree {
+    final MathObject key, value;
+    final PersistentTree left, right;
+    final int size;
+    /**heap priority, the priority of a node is greater or equal to the priorities of its children*/
+    private final int priority;
+
+    private PersistentTree(MathObject key, MathObject value, int priority, PersistentTree left, PersistentTree right) {
+        this.key = key;
+        this.value = value;
+        this.priority = priority;
+        this.left = left;
+        this.right = right;
+        this.size = size(left) + size(right) + 1;
+    }
+    /**copy of this node with the given children*/
+    private PersistentTree with(PersistentTree left, PersistentTree right) {
+        if (left == this.left && right == this.right)
+            return this;
+        return new PersistentTree(key, value, priority, left, right);
+    }
+
+    static int size(PersistentTree t) {
+        return t == null ? 0 : t.size;
+    }
+
+    /**creates a tree from the given entries
+     * @param keys keys sorted by {@link MathObject#compare(MathObject, MathObject)} without duplicates
+     * @param values values of the entries, may be null for trees that are used as sets*/
+    static PersistentTree fromSorted(List<? extends MathObject> keys, List<? extends MathObject> values) {
+        return fromSorted(keys, values, 0, keys.size());
+    }
+    private static PersistentTree fromSorted(List<? extends MathObject> keys, List<? extends MathObject> values, int from, int to) {
+        if (from >= to)
+            return null;
+        int mid = (from + to) >>> 1;
+        PersistentTree left = fromSorted(keys, values, from, mid), right = fromSorted(keys, values, mid + 1, to);
+        //the root has the maximal priority of the subtree, like in a treap with random priorities
+        int priority = ThreadLocalRandom.current().nextInt();
+        if (left != null)
+            priority = Math.max(priority, left.priority);
+        if (right != null)
+            priority = Math.max(priority, right.priority);
+        return new PersistentTree(keys.get(mid), values == null ? null : values.get(mid), priority, left, right);
+    }
+
+    /**@return the node with the given key, or null if there is no such node*/
+    static PersistentTree get(PersistentTree t, MathObject key) {
+        while (t != null) {
+            int c = MathObject.compare(key, t.key);
+            if (c == 0)
+                return t;
+            t = c < 0 ? t.left : t.right;
+        }
+        return null;
+    }
+    static PersistentTree first(PersistentTree t) {
+        if (t != null) {
+            while (t.left != null)
+                t = t.left;
+        }
+        return t;
+    }
+    static PersistentTree last(PersistentTree t) {
+        if (t != null) {
+            while (t.right != null)
+                t = t.right;
+        }
+        return t;
+    }
+
+    /**@return t with the entry key->value, an existing entry with the same key is replaced*/
+    static PersistentTree put(PersistentTree t, MathObject key, MathObject value) {
+        if (t == null)
+            return new PersistentTree(key, value, ThreadLocalRandom.current().nextInt(), null, null);
+        int c = MathObject.compare(key, t.key);
+        if (c == 0) {
+            return new PersistentTree(key, value, t.priority, t.left, t.right);
+        } else if (c < 0) {
+            PersistentTree l = put(t.left, key, value);
+            if (l.priority > t.priority)//rotate right
+                return l.with(l.left, t.with(l.right, t.right));
+            return t.with(l, t.right);
+        } else {
+            PersistentTree r = put(t.right, key, value);
+            if (r.priority > t.priority)//rotate left
+                return r.with(t.with(t.left, r.left), r.right);
+            return t.with(t.left, r);
+        }
+    }
+    /**@return t with the entry with the given key removed*/
+    static PersistentTree remove(PersistentTree t, MathObject key) {
+        if (t == null)
+            return null;
+        int c = MathObject.compare(key, t.key);
+        if (c == 0) {
+            return join(t.left, t.right);
+        } else if (c < 0) {
+            PersistentTree l = remove(t.left, key);
+            return l == t.left ? t : t.with(l, t.right);
+        } else {
+            PersistentTree r = remove(t.right, key);
+            return r == t.right ? t : t.with(t.left, r);
+        }
+    }
+
+    /**joins two trees where all keys in l are less than all keys in r*/
+    static PersistentTree join(PersistentTree l, PersistentTree r) {
+        if (l == null)
+            return r;
+        if (r == null)
+            return l;
+        if (l.priority > r.priority) {
+            return l.with(l.left, join(l.right, r));
+        } else {
+            return r.with(join(l, r.left), r.right);
+        }
+    }
+    /**splits t at key
+     * @return the entries less than key, the node with the given key (or null) and the entries greater than key*/
+    static PersistentTree[] split(PersistentTree t, MathObject key) {
+        if (t == null)
+            return new PersistentTree[3];
+        int c = MathObject.compare(key, t.key);
+        if (c == 0) {
+            return new PersistentTree[]{t.left, t, t.right};
+        } else if (c < 0) {
+            PersistentTree[] s = split(t.left, key);
+            s[2] = t.with(s[2], t.right);
+            return s;
+        } else {
+            PersistentTree[] s = split(t.right, key);
+            s[0] = t.with(t.left, s[0]);
+            return s;
+        }
+    }
+    /**@param node node that is inserted between l and r, the children of node are ignored*/
+    private static PersistentTree join(PersistentTree l, PersistentTree node, PersistentTree r) {
+        if (node == null)
+            return join(l, r);
+        if (l == null && r == null && node.left == null && node.right == null)
+            return node;
+        return join(join(l, node.with(null, null)), r);
+    }
+    /**all entries with keys less than (or equal to) last*/
+    static PersistentTree head(PersistentTree t, MathObject last, boolean include) {
+        PersistentTree[] s = split(t, last);
+        return include ? join(s[0], s[1], null) : s[0];
+    }
+    /**all entries with keys greater than (or equal to) first*/
+    static PersistentTree tail(PersistentTree t, MathObject first, boolean include) {
+        PersistentTree[] s = split(t, first);
+        return include ? join(null, s[1], s[2]) : s[2];
+    }
+
+    /**root node with the entry of node and the given children,
+     * priority has to be at least the priority of all nodes in the children*/
+    private static PersistentTree root(PersistentTree node, int priority, PersistentTree left, PersistentTree right) {
+        return new PersistentTree(node.key, node.value, priority, left, right);
+    }
+    /**@return all entries of a and b, for keys contained in both trees the entry of a is used*/
+    static PersistentTree union(PersistentTree a, PersistentTree b) {
+        if (a == null || a == b)
+            return b == null ? a : b;
+        if (b == null)
+            return a;
+        if (a.priority >= b.priority) {
+            PersistentTree[] s = split(b, a.key);
+            return a.with(union(a.left, s[0]), union(a.right, s[2]));
+        } else {
+            PersistentTree[] s = split(a, b.key);
+            return root(s[1] == null ? b : s[1], b.priority, union(s[0], b.left), union(s[2], b.right));
+        }
+    }
+    /**@return the entries of a with keys that are contained in b*/
+    static PersistentTree intersection(PersistentTree a, PersistentTree b) {
+        if (a == null || b == null)
+            return null;
+        if (a == b)
+            return a;
+        if (a.priority >= b.priority) {
+            PersistentTree[] s = split(b, a.key);
+            PersistentTree l = intersection(a.left, s[0]), r = intersection(a.right, s[2]);
+            return s[1] == null ? join(l, r) : a.with(l, r);
+        } else {
+            PersistentTree[] s = split(a, b.key);
+            PersistentTree l = intersection(s[0], b.left), r = intersection(s[2], b.right);
+            return s[1] == null ? join(l, r) : root(s[1], b.priority, l, r);
+        }
+    }
+    /**@return the entries of a with keys that are not contained in b*/
+    static PersistentTree difference(PersistentTree a, PersistentTree b) {
+        if (a == null || a == b)
+            return null;
+        if (b == null)
+            return a;
+        if (a.priority >= b.priority) {
+            PersistentTree[] s = split(b, a.key);
+            PersistentTree l = difference(a.left, s[0]), r = difference(a.right, s[2]);
+            return s[1] == null ? a.with(l, r) : join(l, r);
+        } else {
+            PersistentTree[] s = split(a, b.key);
+            return join(difference(s[0], b.left), difference(s[2], b.right));
+        }
+    }
+
+    /**iterates over the nodes of t in ascending order*/
+    static Iterator<PersistentTree> iterator(PersistentTree t) {
+        return new Iterator<PersistentTree>() {
+            final ArrayDeque<PersistentTree> stack = new ArrayDeque<>();
+            {
+                pushLeft(t);
+            }
+            private void pushLeft(PersistentTree t) {
+                while (t != null) {
+                    stack.push(t);
+                    t = t.left;
+                }
+            }
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+            @Override
+            public PersistentTree next() {
+                if (stack.isEmpty())
+                    throw new NoSuchElementException();
+                PersistentTree next = stack.pop();
+                pushLeft(next.right);
+                return next;
+            }
+        };
+    }
+}
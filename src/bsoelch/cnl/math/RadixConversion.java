@@ -0,0 +1,215 @@
+package bsoelch.cnl.math;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**Divide and conquer conversion of BigIntegers from and to digits in an arbitrary base,
+ * numbers are split at powers base^(2^k) of the base, large sub-trees are converted in parallel*/
+final class RadixConversion {
+    private RadixConversion(){}
+
+    /**numbers with less bits are converted digit by digit*/
+    private static final int SPLIT_THRESHOLD = 1024;
+    /**numbers with less digits are parsed digit by digit*/
+    private static final int PARSE_THRESHOLD = 256;
+    /**the two halves of numbers with at least this number of bits are converted in parallel*/
+    private static final int PARALLEL_THRESHOLD = 1<<18;
+
+    /**powers base^(2^k) for k=0,1,...*/
+    private static final class PowerTree {
+        final BigInteger base;
+        final ArrayList<BigInteger> powers = new ArrayList<>();
+
+        PowerTree(BigInteger base) {
+            this.base = base;
+            powers.add(base);
+        }
+        /**@return base^(2^k)*/
+        synchronized BigInteger get(int k) {
+            while (powers.size() <= k) {
+                BigInteger last = powers.get(powers.size() - 1);
+                powers.add(last.multiply(last));
+            }
+            return powers.get(k);
+        }
+        /**@return the smallest k with base^(2^k) > value*/
+        int levelAbove(BigInteger value) {
+            int k = 0;
+            while (get(k).compareTo(value) <= 0) {
+                k++;
+            }
+            return k;
+        }
+    }
+
+    /**@param value non-negative integer
+     * @param minDigits minimal number of digits in the result, missing digits are filled with zeros
+     * @return the digits of value in the given base, starting with the least significant digit*/
+    static ArrayList<BigInteger> toDigits(BigInteger value, BigInteger base, int minDigits) {
+        ArrayList<BigInteger> digits = new ArrayList<>();
+        if (value.signum() != 0) {
+            PowerTree tree = new PowerTree(base);
+            int k = tree.levelAbove(value);
+            if (k == 0) {
+                digits.add(value);
+            } else {
+                toDigits(value, tree, k - 1, -1, digits);
+            }
+        }
+        while (digits.size() < minDigits) {
+            digits.add(BigInteger.ZERO);
+        }
+        return digits;
+    }
+    /**appends the digits of value (with value < base^(2^(k+1))) to target
+     * @param count number of digits that should be appended, -1 if the leading zeros should be omitted*/
+    private static void toDigits(BigInteger value, PowerTree tree, int k, long count, List<BigInteger> target) {
+        if (value.bitLength() < SPLIT_THRESHOLD || k < 0) {
+            int start = target.size();
+            BigInteger[] tmp;
+            while (value.signum() != 0) {
+                tmp = value.divideAndRemainder(tree.base);
+                target.add(tmp[1]);
+                value = tmp[0];
+            }
+            while (count >= 0 && target.size() - start < count) {
+                target.add(BigInteger.ZERO);
+            }
+            return;
+        }
+        if (count < 0 && value.compareTo(tree.get(k)) < 0) {//no leading zeros
+            toDigits(value, tree, k - 1, -1, target);
+            return;
+        }
+        BigInteger[] parts = value.divideAndRemainder(tree.get(k));
+        long lowCount = 1L << k;
+        if (value.bitLength() >= PARALLEL_THRESHOLD) {
+            ForkJoinTask<ArrayList<BigInteger>> high = ForkJoinTask.adapt(() -> {
+                ArrayList<BigInteger> digits = new ArrayList<>();
+                toDigits(parts[0], tree, k - 1, count < 0 ? -1 : count - lowCount, digits);
+                return digits;
+            }).fork();
+            toDigits(parts[1], tree, k - 1, lowCount, target);
+            target.addAll(high.join());
+        } else {
+            toDigits(parts[1], tree, k - 1, lowCount, target);
+            toDigits(parts[0], tree, k - 1, count < 0 ? -1 : count - lowCount, target);
+        }
+    }
+
+    /**@param value non-negative integer
+     * @param radix base with at most {@link Real#DIGITS} digits
+     * @param minDigits minimal number of digits in the result, missing digits are filled with zeros
+     * @return the string representation of value in the given base using the characters in {@link Real#DIGITS}*/
+    static String toString(BigInteger value, int radix, int minDigits) {
+        StringBuilder str = new StringBuilder();
+        if (value.signum() != 0) {
+            PowerTree tree = new PowerTree(BigInteger.valueOf(radix));
+            int k = tree.levelAbove(value);
+            toString(value, radix, tree, k - 1, -1, str);
+        }
+        if (str.length() < minDigits) {
+            StringBuilder padded = new StringBuilder(minDigits);
+            for (int i = str.length(); i < minDigits; i++) {
+                padded.append('0');
+            }
+            return padded.append(str).toString();
+        }
+        return str.toString();
+    }
+    private static void toString(BigInteger value, int radix, PowerTree tree, int k, long count, StringBuilder target) {
+        if (value.bitLength() < SPLIT_THRESHOLD || k < 0) {
+            if (count < 0 && value.signum() == 0)
+                return;//no leading zeros
+            String digits;
+            if (radix <= Character.MAX_RADIX) {
+                digits = value.toString(radix);
+            } else {
+                StringBuilder tmp = new StringBuilder();
+                for (BigInteger d : toDigits(value, tree.base, 0)) {
+                    tmp.append(Real.DIGITS.charAt(d.intValueExact()));
+                }
+                digits = tmp.reverse().toString();
+            }
+            for (long i = digits.length(); i < count; i++) {
+                target.append('0');
+            }
+            target.append(digits);
+            return;
+        }
+        if (count < 0 && value.compareTo(tree.get(k)) < 0) {//no leading zeros
+            toString(value, radix, tree, k - 1, -1, target);
+            return;
+        }
+        BigInteger[] parts = value.divideAndRemainder(tree.get(k));
+        long lowCount = 1L << k;
+        if (value.bitLength() >= PARALLEL_THRESHOLD) {
+            ForkJoinTask<StringBuilder> low = ForkJoinTask.adapt(() -> {
+                StringBuilder digits = new StringBuilder();
+                toString(parts[1], radix, tree, k - 1, lowCount, digits);
+                return digits;
+            }).fork();
+            toString(parts[0], radix, tree, k - 1, count < 0 ? -1 : count - lowCount, target);
+            target.append(low.join());
+        } else {
+            toString(parts[0], radix, tree, k - 1, count < 0 ? -1 : count - lowCount, target);
+            toString(parts[1], radix, tree, k - 1, lowCount, target);
+        }
+    }
+
+    /**@param digits digits of a number in the given base, starting with the most significant digit
+     * @return the value of the digits*/
+    static BigInteger fromDigits(List<BigInteger> digits, BigInteger base) {
+        if (digits.isEmpty())
+            return BigInteger.ZERO;
+        return fromDigits(digits, 0, digits.size(), new PowerTree(base));
+    }
+    private static BigInteger fromDigits(List<BigInteger> digits, int start, int end, PowerTree tree) {
+        if (end - start <= PARSE_THRESHOLD) {
+            BigInteger res = BigInteger.ZERO;
+            for (int i = start; i < end; i++) {
+                res = res.multiply(tree.base).add(digits.get(i));
+            }
+            return res;
+        }
+        int k = 31 - Integer.numberOfLeadingZeros(end - start - 1);//largest k with 2^k < length
+        int mid = end - (1 << k);
+        if (end - start >= PARALLEL_THRESHOLD / 8) {
+            ForkJoinTask<BigInteger> low = ForkJoinTask.adapt(() -> fromDigits(digits, mid, end, tree)).fork();
+            BigInteger high = fromDigits(digits, start, mid, tree);
+            return high.multiply(tree.get(k)).add(low.join());
+        }
+        return fromDigits(digits, start, mid, tree).multiply(tree.get(k)).add(fromDigits(digits, mid, end, tree));
+    }
+
+    /**parses a string of digits with an optional sign in the given base (at most {@link Character#MAX_RADIX}),
+     * accepts the same strings as {@link BigInteger#BigInteger(String, int)}
+     * @throws NumberFormatException if the string is not a valid number*/
+    static BigInteger parse(String value, int radix) {
+        if (value.length() <= PARSE_THRESHOLD)
+            return new BigInteger(value, radix);
+        boolean negative = value.charAt(0) == '-';
+        int start = negative || value.charAt(0) == '+' ? 1 : 0;
+        for (int i = start; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), radix) < 0)
+                throw new NumberFormatException("Illegal digit");
+        }
+        BigInteger res = parse(value, start, value.length(), new PowerTree(BigInteger.valueOf(radix)), radix);
+        return negative ? res.negate() : res;
+    }
+    private static BigInteger parse(String digits, int start, int end, PowerTree tree, int radix) {
+        if (end - start <= PARSE_THRESHOLD) {
+            return new BigInteger(digits.substring(start, end), radix);
+        }
+        int k = 31 - Integer.numberOfLeadingZeros(end - start - 1);//largest k with 2^k < length
+        int mid = end - (1 << k);
+        if (end - start >= PARALLEL_THRESHOLD / 8) {
+            ForkJoinTask<BigInteger> low = ForkJoinTask.adapt(() -> parse(digits, mid, end, tree, radix)).fork();
+            BigInteger high = parse(digits, start, mid, tree, radix);
+            return high.multiply(tree.get(k)).add(low.join());
+        }
+        return parse(digits, start, mid, tree, radix).multiply(tree.get(k)).add(parse(digits, mid, end, tree, radix));
+    }
+}
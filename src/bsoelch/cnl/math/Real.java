@@ -5,6 +5,7 @@ import bsoelch.cnl.Constants;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static bsoelch.cnl.Constants.*;
 
@@ -23,19 +24,24 @@ public abstract class Real extends NumericValue {
     private static final double LOG2TO10 = (Math.log(2) / Math.log(digitBase.doubleValue()));
 
     public static Int from(long value){
-        return from(BigInteger.valueOf(value));
-    }
-    public static Int from(BigInteger a) {
-        if (a.equals(BigInteger.ZERO)) {
+        if (value == 0) {
             return Int.ZERO;
-        } else if (a.equals(BigInteger.ONE)) {
+        } else if (value == 1) {
             return Int.ONE;
-        } else if (a.equals(BIG_INT_NEG_ONE)) {
+        } else if (value == -1) {
             return Int.NEGATIVE_ONE;
-        }  else if (a.equals(BIG_INT_TWO)) {
+        }  else if (value == 2) {
             return Int.TWO;
         } else {
-            return new Int(a);
+            return new Int(value,null);
+        }
+    }
+    public static Int from(BigInteger a) {
+        if (a.bitLength() < 64) {
+            long value=a.longValue();
+            return value >= -1 && value <= 2 ? from(value) : new Int(value, a);
+        } else {
+            return new Int(0, a);
         }
     }
 
@@ -51,8 +57,8 @@ public abstract class Real extends NumericValue {
             b = b.negate();
         }
         BigInteger g = a.gcd(b);
-        a = a.divide(g);
-        b = b.divide(g);
+        a = BigArithmetic.divide(a, g);
+        b = BigArithmetic.divide(b, g);
         if (b.equals(BigInteger.ONE)) {
             return from(a);
         } else {
@@ -61,31 +67,155 @@ public abstract class Real extends NumericValue {
     }
 
     static public Real add(Real a, Real b) {
-        if (a.isInt() && b.isInt()) {
+        if (a instanceof Int && b instanceof Int && ((Int) a).isSmall() && ((Int) b).isSmall()) {
+            try {
+                return from(Math.addExact(((Int) a).small, ((Int) b).small));
+            }catch (ArithmeticException overflow){
+                return from(a.num().add(b.num()));
+            }
+        } else if (a.isInt() && b.isInt()) {
             return from(a.num().add(b.num()));
         } else {
-            return from(a.num().multiply(b.den()).add(a.den().multiply(b.num())), a.den().multiply(b.den()));
+            return addReduced(a.num(), a.den(), b.num(), b.den());
         }
     }
 
     static public Real subtract(Real a, Real b) {
-        if (a.isInt() && b.isInt()) {
+        if (a instanceof Int && b instanceof Int && ((Int) a).isSmall() && ((Int) b).isSmall()) {
+            try {
+                return from(Math.subtractExact(((Int) a).small, ((Int) b).small));
+            }catch (ArithmeticException overflow){
+                return from(a.num().subtract(b.num()));
+            }
+        } else if (a.isInt() && b.isInt()) {
             return from(a.num().subtract(b.num()));
         } else {
-            return from(a.num().multiply(b.den()).subtract(a.den().multiply(b.num())), a.den().multiply(b.den()));
+            return addReduced(a.num(), a.den(), b.num().negate(), b.den());
         }
     }
 
     static public Real multiply(Real a, Real b) {
-        if (a.isInt() && b.isInt()) {
-            return from(a.num().multiply(b.num()));
+        if (a instanceof Int && b instanceof Int && ((Int) a).isSmall() && ((Int) b).isSmall()) {
+            try {
+                return from(Math.multiplyExact(((Int) a).small, ((Int) b).small));
+            }catch (ArithmeticException overflow){
+                return from(a.num().multiply(b.num()));
+            }
+        } else if (a.isInt() && b.isInt()) {
+            return from(BigArithmetic.multiply(a.num(), b.num()));
         } else {
-            return from(a.num().multiply(b.num()), a.den().multiply(b.den()));
+            return multiplyReduced(a.num(), a.den(), b.num(), b.den());
         }
     }
 
     static public Real divide(Real a, Real b) {
-        return from(a.num().multiply(b.den()), a.den().multiply(b.num()));
+        if (a instanceof Int && b instanceof Int && ((Int) a).isSmall() && ((Int) b).isSmall()) {
+            long x = ((Int) a).small, y = ((Int) b).small;
+            if (y != 0 && x % y == 0 && !(x == Long.MIN_VALUE && y == -1))
+                return from(x / y);
+        }
+        if (b.num().signum() == 0)
+            return from(a.num().multiply(b.den()), a.den().multiply(b.num()));
+        if (b.num().signum() < 0)
+            return multiplyReduced(a.num(), a.den(), b.den().negate(), b.num().negate());
+        return multiplyReduced(a.num(), a.den(), b.den(), b.num());
+    }
+
+    /**Real with the given numerator and denominator, that are already known to be coprime
+     * @param den positive denominator*/
+    static Real fromReduced(BigInteger num, BigInteger den) {
+        if (den.equals(BigInteger.ONE) || num.signum() == 0) {
+            return from(num);
+        } else {
+            return new Fraction(num, den);
+        }
+    }
+    /**calculates base^n for n>0, the numerator and denominator of a reduced fraction
+     * are raised to the power separately, as their powers are still coprime*/
+    static Real pow(Real base, int n) {
+        if (base instanceof Int && ((Int) base).isSmall()) {
+            long value = ((Int) base).longValueExact();
+            if (value >= -1 && value <= 1)
+                return value == -1 && (n & 1) == 1 ? base : from(value * value);
+        }
+        return fromReduced(base.num().pow(n), base.den().pow(n));
+    }
+    /**calculates a/b+c/d for reduced fractions a/b and c/d,
+     * by only calculating gcds of the (smaller) parts that can have common factors*/
+    private static Real addReduced(BigInteger a, BigInteger b, BigInteger c, BigInteger d) {
+        if (b.equals(BigInteger.ONE)) {//(a*d+c)/d is reduced
+            return fromReduced(a.multiply(d).add(c), d);
+        } else if (d.equals(BigInteger.ONE)) {
+            return fromReduced(c.multiply(b).add(a), b);
+        }
+        BigInteger g = b.gcd(d);
+        if (g.equals(BigInteger.ONE)) {
+            return fromReduced(a.multiply(d).add(c.multiply(b)), b.multiply(d));
+        }
+        BigInteger b1 = b.divide(g);
+        BigInteger t = a.multiply(d.divide(g)).add(c.multiply(b1));
+        BigInteger g2 = t.gcd(g);//common factors of t and b*d can only be factors of g
+        if (g2.equals(BigInteger.ONE)) {
+            return fromReduced(t, b1.multiply(d));
+        } else {
+            return fromReduced(t.divide(g2), b1.multiply(d.divide(g2)));
+        }
+    }
+    /**calculates (a/b)*(c/d) for reduced fractions a/b and c/d with positive denominators,
+     * by only calculating the gcds of a,d and b,c*/
+    private static Real multiplyReduced(BigInteger a, BigInteger b, BigInteger c, BigInteger d) {
+        BigInteger g1 = a.gcd(d), g2 = c.gcd(b);
+        if (!g1.equals(BigInteger.ONE)) {
+            a = BigArithmetic.divide(a, g1);
+            d = BigArithmetic.divide(d, g1);
+        }
+        if (!g2.equals(BigInteger.ONE)) {
+            c = BigArithmetic.divide(c, g2);
+            b = BigArithmetic.divide(b, g2);
+        }
+        return fromReduced(BigArithmetic.multiply(a, c), BigArithmetic.multiply(b, d));
+    }
+    /**sum of all given values, fractions are summed up in a balanced tree,
+     * so that most additions are applied to numbers of similar (small) size*/
+    static public Real sum(List<Real> values) {
+        boolean allInts = true;
+        for (Real r : values) {
+            if (!r.isInt()) {
+                allInts = false;
+                break;
+            }
+        }
+        if (allInts) {
+            Real sum = Int.ZERO;
+            for (Real r : values) {
+                sum = add(sum, r);
+            }
+            return sum;
+        }
+        return sum(values, 0, values.size());
+    }
+    /**@return sum of values[start:end]*/
+    private static Real sum(List<Real> values, int start, int end) {
+        if (end - start == 1) {
+            return values.get(start);
+        }
+        int mid = (start + end) >>> 1;
+        return add(sum(values, start, mid), sum(values, mid, end));
+    }
+    /**product of all given values, calculated in a balanced product tree,
+     * so that most multiplications are applied to numbers of similar (small) size*/
+    static public Real product(List<Real> values) {
+        if (values.isEmpty())
+            return Int.ONE;
+        return product(values, 0, values.size());
+    }
+    /**@return product of values[start:end]*/
+    private static Real product(List<Real> values, int start, int end) {
+        if (end - start == 1) {
+            return values.get(start);
+        }
+        int mid = (start + end) >>> 1;
+        return multiply(product(values, start, mid), product(values, mid, end));
     }
     static public Real[] divideAndRemainder(Real a, Real b) {
         Real div=divide(a,b),intDiv=div.round(FLOOR);
@@ -143,12 +273,7 @@ public abstract class Real extends NumericValue {
         if (useSmallBase&&base.compareTo(Constants.MAX_INT)<0&&base.intValueExact() < DIGITS.length()) {
             if (base.intValueExact() < 36)
                 return a.toString(base.intValueExact());
-            ArrayList<BigInteger> digits = toBaseN(a, base);
-            StringBuilder str = new StringBuilder(digits.size());
-            for (int i = digits.size() - 1; i >= 0; i--) {
-                str.append(DIGITS.charAt(digits.get(i).intValueExact()));
-            }
-            return str.toString();
+            return RadixConversion.toString(a.abs(), base.intValueExact(), 0);
         } else {
             return toStringBigBase(base, a);
         }
@@ -169,15 +294,7 @@ public abstract class Real extends NumericValue {
     static ArrayList<BigInteger> toBaseN(BigInteger value, BigInteger base) {
         if (base.compareTo(BIG_INT_TWO) < 0)
             throw new IllegalArgumentException("Base has to be at least 2");
-        value = value.abs();
-        ArrayList<BigInteger> ret = new ArrayList<>((int) Math.ceil(value.bitLength() * Math.log(2) / Math.log(base.doubleValue())));
-        BigInteger[] tmp;
-        while (value.signum() != 0) {
-            tmp = value.divideAndRemainder(base);
-            ret.add(tmp[1]);
-            value = tmp[0];
-        }
-        return ret;
+        return RadixConversion.toDigits(value.abs(), base, 0);
     }
 
     public static Real bigIntFromString(String value, BigInteger base) {
@@ -205,30 +322,28 @@ public abstract class Real extends NumericValue {
         }else{
             int smallBase=base.intValueExact();
             if(smallBase<=36){
-                return from(new BigInteger(value,smallBase));
+                return from(RadixConversion.parse(value,smallBase));
             }else{
-                BigInteger res=BigInteger.ZERO;
+                ArrayList<BigInteger> digits=new ArrayList<>(value.length());
                 int index;
                 for(char c:value.toCharArray()){
                     index = DIGITS.indexOf(c);
                     if(index==-1||index>=smallBase)
                         throw new IllegalArgumentException("Unexpected character:"+c);
-                    res=res.multiply(base);
-                    res=res.add(BigInteger.valueOf(index));
+                    digits.add(BigInteger.valueOf(index));
                 }
-                return from(res);
+                return from(RadixConversion.fromDigits(digits,base));
             }
         }
     }
 
     public static Real bigBaseFromString(String value, BigInteger base) {
         String[] parts=value.split(""+ digitSeparator,-1);//allow empty tails
-        BigInteger res=BigInteger.ZERO;
+        ArrayList<BigInteger> digits=new ArrayList<>(parts.length);
         for(String s:parts){
-            res=res.multiply(base);
-            res=res.add(bigIntFromString(s, digitBase).num());
+            digits.add(bigIntFromString(s, digitBase).num());
         }
-        return from(res);
+        return from(RadixConversion.fromDigits(digits,base));
     }
     /**approximate value for the logarithm of value in base 2*/
     public static double approxLog2(BigInteger value){
@@ -286,31 +401,66 @@ public abstract class Real extends NumericValue {
     /**approximate value for the logarithm of this real number in base 2*/
     public abstract double approxLog2();
 
+    /**writes the same characters as {@link #toStringFixedPoint(BigInteger, Real, boolean)} to out,
+     * approximated digits are written in blocks as soon as they are calculated*/
+    public void writeFixedPoint(Consumer<CharSequence> out, BigInteger base, Real precision, boolean useSmallBase) {
+        writeFixedPoint(out, num(), den(), base, precision, useSmallBase);
+    }
+    /**writes the same characters as {@link #toStringFloat(BigInteger, Real, boolean)} to out,
+     * approximated digits are written in blocks as soon as they are calculated*/
+    public void writeFloat(Consumer<CharSequence> out, BigInteger base, Real precision, boolean useSmallBase) {
+        writeFloat(out, num(), den(), base, precision, useSmallBase);
+    }
 
-    public static final class Int extends Real {
-        public static final Int ZERO = new Int(BigInteger.ZERO);
-        public static final Int ONE = new Int(BigInteger.ONE);
-        public static final Int NEGATIVE_ONE = new Int(BIG_INT_NEG_ONE) ;
-        public static final Int TWO = new Int(BIG_INT_TWO) ;
-
-        private final BigInteger value;
 
-        private Int(BigInteger value) {
+    /**Integer, values that fit into a long are stored as long,
+     * the BigInteger representation of these values is only created when it is needed*/
+    public static final class Int extends Real {
+        public static final Int ZERO = new Int(0,BigInteger.ZERO);
+        public static final Int ONE = new Int(1,BigInteger.ONE);
+        public static final Int NEGATIVE_ONE = new Int(-1,BIG_INT_NEG_ONE) ;
+        public static final Int TWO = new Int(2,BIG_INT_TWO) ;
+
+        /**value of this Int, if this Int is small*/
+        private final long small;
+        /**true if the value of this Int fits into a long*/
+        private final boolean isSmall;
+        /**BigInteger representation of the value, may be null for small values*/
+        private BigInteger value;
+
+        /**@param small value of this Int, ignored if value does not fit into a long
+         * @param value BigInteger representation of the value, may be null if the value fits into a long*/
+        private Int(long small, BigInteger value) {
+            this.isSmall = value==null||value.bitLength() < 64;
+            this.small = small;
             this.value = value;
         }
 
+        public boolean isSmall(){
+            return isSmall;
+        }
+        /**@return the value of this Int as long
+         * @throws ArithmeticException if the value does not fit into a long*/
+        public long longValueExact(){
+            if(!isSmall)
+                throw new ArithmeticException("value out of long range");
+            return small;
+        }
+
         @Override
         public Real signum() {
-            return from(value.signum());
+            return from(isSmall?Long.signum(small):value.signum());
         }
         @Override
         public BigInteger num() {
+            if(value==null)
+                value=BigInteger.valueOf(small);
             return value;
         }
 
         @Override
         public Real numerator() {
-            return super.numerator();
+            return this;
         }
         @Override
         public BigInteger den() {
@@ -324,12 +474,14 @@ public abstract class Real extends NumericValue {
 
         @Override
         public Real abs() {
-            return from(value.abs());
+            if(isSmall&&small!=Long.MIN_VALUE)
+                return small<0?from(-small):this;
+            return from(num().abs());//value is null for Long.MIN_VALUE
         }
 
         @Override
         public double approxLog2() {
-            return approxLog2(value);
+            return approxLog2(num());
         }
 
         @Override
@@ -349,19 +501,23 @@ public abstract class Real extends NumericValue {
 
         @Override
         public Real negate() {
-            return from(value.negate());
+            if(isSmall&&small!=Long.MIN_VALUE)
+                return from(-small);
+            return from(num().negate());
         }
 
         @Override
         public Real invert() {
-            return from(BigInteger.ONE, value);
+            return from(BigInteger.ONE, num());
         }
 
         @Override
         public int compareTo(NumericValue o) {
             if (o instanceof Int) {
                 Int anInt = (Int) o;
-                return value.compareTo(anInt.value);
+                if(isSmall&&anInt.isSmall)
+                    return Long.compare(small,anInt.small);
+                return num().compareTo(anInt.num());
             } else {
                 return -o.compareTo(this);
             }
@@ -373,38 +529,46 @@ public abstract class Real extends NumericValue {
             if (!(o instanceof NumericValue)) return false;
             if (o instanceof Int) {
                 Int anInt = (Int) o;
+                if(isSmall||anInt.isSmall)
+                    return isSmall==anInt.isSmall&&small==anInt.small;
                 return value.equals(anInt.value);
             } else {
                 return o.equals(this);
             }
         }
 
+        /**same value as the hashCode of the BigInteger representation*/
         @Override
         public int hashCode() {
+            if(isSmall){
+                long mag=Math.abs(small);//Long.MIN_VALUE is interpreted as unsigned value
+                int high=(int)(mag>>>32),low=(int)mag;
+                return (high==0?low:31*high+low)*Long.signum(small);
+            }
             return value.hashCode();
         }
 
         @Override
         public String toString(BigInteger base, boolean useSmallBase) {
-            return toString(base,value, useSmallBase);
+            return toString(base,num(), useSmallBase);
         }
 
         @Override
         public String toStringFixedPoint(BigInteger base, Real precision, boolean useSmallBase) {
-            return Real.toStringFixedPoint(value,BigInteger.ONE,base,precision, useSmallBase);
+            return Real.toStringFixedPoint(num(),BigInteger.ONE,base,precision, useSmallBase);
         }
         @Override
         public String toStringFloat(BigInteger base, Real precision, boolean useSmallBase) {
-            return Real.toStringFloat(value,BigInteger.ONE,base,precision, useSmallBase);
+            return Real.toStringFloat(num(),BigInteger.ONE,base,precision, useSmallBase);
         }
 
         public String asString(){
-            return bigIntAsString(value.abs());
+            return bigIntAsString(num().abs());
         }
 
         @Override
         public String intsAsString() {
-            return value.signum()<0?"-'":"'"+asString()+"'";
+            return num().signum()<0?"-'":"'"+asString()+"'";
         }
     }
 
@@ -443,7 +607,7 @@ public abstract class Real extends NumericValue {
 
         @Override
         public Int round(int mode) {
-            BigInteger[] tmp = a.divideAndRemainder(b);
+            BigInteger[] tmp = BigArithmetic.divideAndRemainder(a, b);
             if (mode == FLOOR) {
                 if (tmp[1].compareTo(BigInteger.ZERO) < 0)
                     tmp[0] = tmp[0].subtract(BigInteger.ONE);
@@ -478,48 +642,49 @@ public abstract class Real extends NumericValue {
             if(tmp[1].signum()==0) {
                 return from(intPart);
             }else {
-                Real approx;
                 if(tmp[1].signum()<0){
                     intPart=intPart.subtract(BigInteger.ONE);
                     tmp[1]=tmp[1].add(b);//ensure fractionalPart>0
                 }
                 BigInteger a1 = tmp[1], a2 = a1, b2 = b;
-                Real fractionalPart=from(a1,b);
-                ArrayDeque<BigInteger> coefficients = new ArrayDeque<>();
+                BigInteger dNum = delta.num(), dDen = delta.den();
+                //last two convergents p/q of the continued fraction of a1/b
+                BigInteger pPrev = BigInteger.ONE, qPrev = BigInteger.ZERO, p = BigInteger.ZERO, q = BigInteger.ONE;
+                BigInteger approxP, approxQ, next;
                 do {
                     tmp = b2.divideAndRemainder(a2);
-                    coefficients.addFirst(tmp[0]);
+                    next = tmp[0].multiply(p).add(pPrev);
+                    pPrev = p;
+                    p = next;
+                    next = tmp[0].multiply(q).add(qPrev);
+                    qPrev = q;
+                    q = next;
                     b2 = a2;
                     a2 = tmp[1];
-                    approx=eval(coefficients,a2.shiftLeft(1).compareTo(b2)>0);
-                } while (a2.signum() > 0 && (Real.subtract(approx,fractionalPart)
-                        .abs().compareTo(delta)>0));
-                return Real.add(from(intPart), approx);
-            }
-        }
-        private static Real eval(ArrayDeque<BigInteger> coefficients,boolean roundUp){
-            Real val=null;
-            for(BigInteger i:coefficients){
-                if(val==null){
-                    if(roundUp){
-                        val=from(BigInteger.ONE,i.add(BigInteger.ONE));
-                    }else{
-                        val=from(BigInteger.ONE,i);
+                    if (a2.shiftLeft(1).compareTo(b2) > 0) {//round last coefficient up
+                        approxP = p.add(pPrev);
+                        approxQ = q.add(qPrev);
+                    } else {
+                        approxP = p;
+                        approxQ = q;
                     }
-                }else{
-                        val=Real.add(val,from(i)).invert();
-                }
+                    //|approxP/approxQ-a1/b|>delta <=> |approxP*b-a1*approxQ|*dDen>dNum*approxQ*b
+                } while (a2.signum() > 0 && approxP.multiply(b).subtract(a1.multiply(approxQ)).abs().multiply(dDen)
+                        .compareTo(dNum.multiply(approxQ).multiply(b)) > 0);
+                //convergents are reduced
+                return fromReduced(intPart.multiply(approxQ).add(approxP), approxQ);
             }
-            return val;
         }
 
         @Override
         public int compareTo(NumericValue o) {
             if (o instanceof Int) {
-                return a.compareTo(b.multiply(((Int) o).value));
+                int approx = compareApprox(a, b, ((Int) o).num(), BigInteger.ONE);
+                return approx != 0 ? approx : a.compareTo(b.multiply(((Int) o).num()));
             } else if (o instanceof Fraction) {
                 Fraction fraction = (Fraction) o;
-                return a.multiply(fraction.b).compareTo(b.multiply(fraction.a));
+                int approx = compareApprox(a, b, fraction.a, fraction.b);
+                return approx != 0 ? approx : a.multiply(fraction.b).compareTo(b.multiply(fraction.a));
             } else {
                 return -o.compareTo(this);
             }
@@ -577,6 +742,25 @@ public abstract class Real extends NumericValue {
     }
 
 
+    /**compares a/b and c/d (with positive denominators) using only the signs and bit-lengths of the numbers
+     * @return the result of the comparison, or 0 if the values are too close to be compared this way*/
+    private static int compareApprox(BigInteger a, BigInteger b, BigInteger c, BigInteger d) {
+        int sa = a.signum(), sc = c.signum();
+        if (sa != sc) {
+            return sa > sc ? 1 : -1;
+        } else if (sa == 0) {
+            return 0;
+        }
+        //2^(bitLength(a)-bitLength(b)-1) < |a/b| < 2^(bitLength(a)-bitLength(b)+1)
+        long diff = ((long) a.bitLength() - b.bitLength()) - ((long) c.bitLength() - d.bitLength());
+        if (diff >= 2) {
+            return sa;
+        } else if (diff <= -2) {
+            return -sa;
+        }
+        return 0;
+    }
+
     /**calculates the number of digits (after the decimal point)
      * needed to represent numbers in the given base up to the given precision */
     private static int calculateNumDigits(BigInteger base, Real precision) {
@@ -585,23 +769,39 @@ public abstract class Real extends NumericValue {
     }
 
     static String toStringFixedPoint(BigInteger num, BigInteger den, BigInteger base, Real precision, boolean useSmallBase) {
+        StringBuilder ret=new StringBuilder();
+        writeFixedPoint(ret::append,num,den,base,precision,useSmallBase);
+        return ret.toString();
+    }
+    /**writes the fixed point representation of num/den to out,
+     * the digits of approximated fractions are written in blocks as they are calculated*/
+    static void writeFixedPoint(Consumer<CharSequence> out, BigInteger num, BigInteger den, BigInteger base, Real precision, boolean useSmallBase) {
         //calculate number of
         if (den.equals(BigInteger.ONE)) {
-            return (num.signum() == -1 ? "-" : "") + Real.toString(base, num.abs(), useSmallBase);
+            out.accept((num.signum() == -1 ? "-" : "") + Real.toString(base, num.abs(), useSmallBase));
         } else {
             if(precision.equals(Int.ZERO)){
-                return (num.signum() == -1 ? "-" : "")
-                        + fractionToPeriodicString(num.abs(), den, base, useSmallBase);
+                out.accept((num.signum() == -1 ? "-" : "")
+                        + fractionToPeriodicString(num.abs(), den, base, useSmallBase));
             }else{
                 int numDigits= calculateNumDigits(base, precision);
-                return (num.signum() == -1 ? "-" : "")
-                        + fractionToApproxString(num.abs(), den, base, numDigits, useSmallBase);
+                if(num.signum() == -1)
+                    out.accept("-");
+                writeApprox(out, num.abs(), den, base, numDigits, useSmallBase);
             }
         }
     }
 
     static String toStringFloat(BigInteger num, BigInteger den, BigInteger base, Real precision, boolean useSmallBase) {
-        StringBuilder ret=new StringBuilder(num.signum() == -1 ? "-" : "");
+        StringBuilder ret=new StringBuilder();
+        writeFloat(ret::append,num,den,base,precision,useSmallBase);
+        return ret.toString();
+    }
+    /**writes the floating point representation of num/den to out,
+     * the digits of approximated fractions are written in blocks as they are calculated*/
+    static void writeFloat(Consumer<CharSequence> out, BigInteger num, BigInteger den, BigInteger base, Real precision, boolean useSmallBase) {
+        if(num.signum() == -1)
+            out.accept("-");
         num = num.abs();
         int shift=0;
         if(num.compareTo(den)<0){
@@ -621,48 +821,71 @@ public abstract class Real extends NumericValue {
         }
 
         if(precision.equals(Int.ZERO)){
-            ret.append(fractionToPeriodicString(num, den, base, useSmallBase));
+            out.accept(fractionToPeriodicString(num, den, base, useSmallBase));
         }else{
             int numDigits= calculateNumDigits(base, precision);
             //apply shift to precision
             numDigits+=shift;
-            ret.append(fractionToApproxString(num, den, base, numDigits, useSmallBase));
+            writeApprox(out, num, den, base, numDigits, useSmallBase);
         }
         if(shift!=0){
-            ret.append("*").append(toString(base,base, useSmallBase)).append('^')
-                    .append(toString(base,BigInteger.valueOf(shift), useSmallBase));
+            out.accept("*"+toString(base,base, useSmallBase)+'^'+toString(base,BigInteger.valueOf(shift), useSmallBase));
         }
-        return ret.toString();
     }
 
+    /**minimal number of digits in the blocks written by {@link #writeApprox}*/
+    private static final int APPROX_BLOCK_DIGITS = 4096;
     //addLater? handle negative precision
-    private static String fractionToApproxString(BigInteger num, BigInteger den, BigInteger base, int numDigits,boolean useSmallBase) {
-        StringBuilder ret = new StringBuilder(num.signum() < 0 ? "-" : "");
-        num = num.abs();
+    /**writes the first numDigits digits of num/den to out,
+     * the digits are calculated by long division in blocks of base^k and each block is written as soon as it is known*/
+    private static void writeApprox(Consumer<CharSequence> out, BigInteger num, BigInteger den, BigInteger base, int numDigits, boolean useSmallBase) {
+        if(num.signum() < 0) {
+            out.accept("-");
+            num = num.abs();
+        }
         BigInteger[] div = num.divideAndRemainder(den);
-        ret.append(Real.toString(base, div[0], useSmallBase));
+        out.accept(Real.toString(base, div[0], useSmallBase));
         if(numDigits>0&&!div[1].equals(BigInteger.ZERO)) {
-            ret.append(".");
-            num = div[1].multiply(base);
-            ret.ensureCapacity(numDigits);
+            out.accept(".");
             boolean smallBase = useSmallBase && base.compareTo(MAX_INT) < 0 && base.intValueExact() < DIGITS.length();
-            for (int i = 0; i < numDigits; i++) {
-                div = num.divideAndRemainder(den);
-                if (smallBase) {
-                    ret.append(DIGITS.charAt(div[0].intValueExact()));
+            //blocks with at least as many digits as den to keep the number of divisions low
+            int blockSize = (int) Math.max(APPROX_BLOCK_DIGITS, Math.min(Integer.MAX_VALUE, den.bitLength() / approxLog2(base) + 1));
+            BigInteger blockPower = null;
+            BigInteger remainder = div[1];
+            boolean first = true;
+            for (int written = 0; written < numDigits && remainder.signum() != 0; written += blockSize) {
+                int count = Math.min(blockSize, numDigits - written);
+                BigInteger power;
+                if (count == blockSize) {
+                    power = blockPower == null ? blockPower = base.pow(blockSize) : blockPower;
                 } else {
-                    ret.append(div[0].intValueExact()).append(":");
+                    power = base.pow(count);
                 }
-                if (div[1].equals(BigInteger.ZERO)) {
-                    break;
+                div = remainder.multiply(power).divideAndRemainder(den);
+                remainder = div[1];
+                boolean exact = remainder.signum() == 0;//digits end in this block -> no trailing zeros
+                if (smallBase) {
+                    String digits = RadixConversion.toString(div[0], base.intValueExact(), count);
+                    int end = digits.length();
+                    while (exact && digits.charAt(end - 1) == '0')
+                        end--;
+                    out.accept(end == digits.length() ? digits : digits.substring(0, end));
                 } else {
-                    num = div[1].multiply(base);
+                    ArrayList<BigInteger> digits = RadixConversion.toDigits(div[0], base, count);
+                    int end = 0;
+                    while (exact && digits.get(end).signum() == 0)
+                        end++;
+                    StringBuilder block = new StringBuilder();
+                    for (int i = digits.size() - 1; i >= end; i--) {
+                        if (!first)
+                            block.append(':');
+                        block.append(digits.get(i).intValueExact());
+                        first = false;
+                    }
+                    out.accept(block);
                 }
             }
-            if (ret.charAt(ret.length() - 1) == ':')
-                ret.setLength(ret.length() - 1);
         }
-        return ret.toString();
     }
 
     private static String fractionToPeriodicString(BigInteger num, BigInteger den, BigInteger base,boolean useSmallBase){
@@ -167,6 +167,10 @@ public abstract class Tuple extends FiniteMap implements Iterable<MathObject>{
                 return EMPTY_MAP;
             } else if (objects.length == 2) {
                 return new Pair(objects[0], objects[1]);
+            } else if (LongTuple.isLongTuple(objects)) {
+                return LongTuple.from(objects);
+            } else if (objects.length >= VectorTuple.MIN_LENGTH) {
+                return VectorTuple.from(objects);
             } else {
                 return new NTuple(objects);
             }
@@ -0,0 +1,379 @@
+package bsoelch.cnl.math;
+
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**Tuple stored as persistent vector (a trie with 32 children per node and a separate tail),
+ * appending and removing the last element only copies the path to the last leaf,
+ * all other elements are shared with the original Tuple.
+ * Operations that change the structure of the tuple are delegated to an array backed Tuple*/
+final class VectorTuple extends Tuple{
+    /**Tuples with at least this number of elements are stored as VectorTuple*/
+    static final int MIN_LENGTH = 32;
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1<<BITS;
+    private static final int MASK = WIDTH-1;
+    private static final Object[] EMPTY_NODE = new Object[0];
+
+    private final int length;
+    private final int nonZeros;
+    /**shift of the indices at the root level*/
+    private final int shift;
+    /**nodes of the trie, the arrays only have as many elements as children exist*/
+    private final Object[] root;
+    /**last 1 to 32 elements of the tuple*/
+    private final Object[] tail;
+    /**cached hash code of this tuple, 0 if the hash code was not calculated yet*/
+    private int hash;
+
+    private VectorTuple(int length, int nonZeros, int shift, Object[] root, Object[] tail) {
+        this.length = length;
+        this.nonZeros = nonZeros;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**@param objects the elements of the Tuple, should not contain null and must not be empty*/
+    static VectorTuple from(MathObject[] objects){
+        int nz=0;
+        for(MathObject o:objects) {
+            if (!o.equals(Real.Int.ZERO))
+                nz++;
+        }
+        int tailOffset=((objects.length-1)>>>BITS)<<BITS;
+        Object[] tail=Arrays.copyOfRange(objects,tailOffset,objects.length,Object[].class);
+        Object[][] nodes=new Object[tailOffset/WIDTH][];
+        for(int i=0;i<nodes.length;i++){
+            nodes[i]=Arrays.copyOfRange(objects,i*WIDTH,(i+1)*WIDTH,Object[].class);
+        }
+        int shift=BITS;
+        while(nodes.length>WIDTH){//build the next level of the trie
+            Object[][] parents=new Object[(nodes.length+MASK)/WIDTH][];
+            for(int i=0;i<parents.length;i++){
+                parents[i]=Arrays.copyOfRange(nodes,i*WIDTH,Math.min((i+1)*WIDTH,nodes.length),Object[].class);
+            }
+            nodes=parents;
+            shift+=BITS;
+        }
+        return new VectorTuple(objects.length,nz,shift,nodes.length==0?EMPTY_NODE:
+                Arrays.copyOf(nodes,nodes.length,Object[].class),tail);
+    }
+
+    private int tailOffset(){
+        return length-tail.length;
+    }
+
+    @Override
+    public NumericValue numericValue() {
+        return get(0).numericValue();
+    }
+
+    @Override
+    public int size() {
+        return nonZeros;
+    }
+    @Override
+    public int length(){
+        return length;
+    }
+
+    @Override
+    public MathObject get(int i){
+        if(i<0||i>=length)
+            return Real.Int.ZERO;
+        return (MathObject)leafFor(i)[i&MASK];
+    }
+    /**@return the leaf containing the element at index i*/
+    private Object[] leafFor(int i){
+        if(i>=tailOffset())
+            return tail;
+        Object[] node=root;
+        for(int level=shift;level>0;level-=BITS){
+            node=(Object[])node[(i>>>level)&MASK];
+        }
+        return node;
+    }
+
+    /**@return this Tuple with value appended at the end*/
+    VectorTuple append(MathObject value){
+        int nz=value.equals(Real.Int.ZERO)?nonZeros:nonZeros+1;
+        if(tail.length<WIDTH){
+            Object[] newTail=Arrays.copyOf(tail,tail.length+1);
+            newTail[tail.length]=value;
+            return new VectorTuple(length+1,nz,shift,root,newTail);
+        }
+        Object[] newRoot;
+        int newShift=shift;
+        if((length>>>BITS)>(1<<shift)){//root is full
+            newRoot=new Object[]{root,newPath(shift,tail)};
+            newShift+=BITS;
+        }else{
+            newRoot=pushTail(shift,root);
+        }
+        return new VectorTuple(length+1,nz,newShift,newRoot,new Object[]{value});
+    }
+    private Object[] pushTail(int level, Object[] parent){
+        int index=((length-1)>>>level)&MASK;
+        Object[] ret=Arrays.copyOf(parent,Math.max(parent.length,index+1));
+        if(level==BITS){
+            ret[index]=tail;
+        }else if(index<parent.length){
+            ret[index]=pushTail(level-BITS,(Object[])parent[index]);
+        }else{
+            ret[index]=newPath(level-BITS,tail);
+        }
+        return ret;
+    }
+    private static Object[] newPath(int level, Object[] node){
+        return level==0?node:new Object[]{newPath(level-BITS,node)};
+    }
+
+    /**@return this Tuple without its last element, this Tuple should have at least 2 elements*/
+    VectorTuple pop(){
+        MathObject last=(MathObject) tail[tail.length-1];
+        int nz=last.equals(Real.Int.ZERO)?nonZeros:nonZeros-1;
+        if(tail.length>1){
+            return new VectorTuple(length-1,nz,shift,root,Arrays.copyOf(tail,tail.length-1));
+        }
+        Object[] newTail=leafFor(length-2);
+        Object[] newRoot=popTail(shift,root);
+        int newShift=shift;
+        if(newRoot==null){
+            newRoot=EMPTY_NODE;
+        }else if(shift>BITS&&newRoot.length==1){
+            newRoot=(Object[])newRoot[0];
+            newShift-=BITS;
+        }
+        return new VectorTuple(length-1,nz,newShift,newRoot,newTail);
+    }
+    private Object[] popTail(int level, Object[] node){
+        int index=((length-2)>>>level)&MASK;
+        if(level>BITS){
+            Object[] newChild=popTail(level-BITS,(Object[])node[index]);
+            if(newChild==null&&index==0)
+                return null;
+            Object[] ret=Arrays.copyOf(node,newChild==null?index:index+1);
+            if(newChild!=null)
+                ret[index]=newChild;
+            return ret;
+        }else if(index==0){
+            return null;
+        }else{
+            return Arrays.copyOf(node,index);
+        }
+    }
+
+    /**@return true if a Tuple with the given length and number of non-zero elements
+     * would be stored as VectorTuple by {@link Tuple#create(MathObject[])}*/
+    static boolean isVectorTuple(long length, long nonZeros){
+        return length>=MIN_LENGTH&&SPARSE_FACTOR*nonZeros>=length;
+    }
+    /**concatenation of this Tuple and the elements of b
+     * @return the concatenated tuple, or null if the result is not stored as VectorTuple*/
+    VectorTuple concat(MathObject b){
+        if(b instanceof Tuple){
+            Tuple t=(Tuple)b;
+            if(!isVectorTuple(length+(long)t.length(),nonZeros+(long)t.size()))
+                return null;
+            VectorTuple ret=this;
+            for(MathObject o:t){
+                ret=ret.append(o);
+            }
+            return ret;
+        }else{
+            if(!isVectorTuple(length+1L,b.equals(Real.Int.ZERO)?nonZeros:nonZeros+1))
+                return null;
+            return append(b);
+        }
+    }
+
+    /**array backed Tuple with the same elements, used for all operations without a specialized implementation*/
+    private NTuple asArrayTuple(){
+        return new NTuple(toArray());
+    }
+
+    @Override
+    public MathObject insert(MathObject value) {
+        VectorTuple ret=concat(value==null?Real.Int.ZERO:value);
+        return ret!=null?ret:asArrayTuple().insert(value);
+    }
+    @Override
+    public FiniteMap put(MathObject key, MathObject value) {
+        return asArrayTuple().put(key, value);
+    }
+    @Override
+    public Tuple insert(MathObject value, int index) {
+        if(index==length&&value!=null){
+            VectorTuple ret=concat(value);
+            if(ret!=null)
+                return ret;
+        }
+        return asArrayTuple().insert(value, index);
+    }
+    @Override
+    public FiniteMap remove(int index) {
+        if(index==length-1&&isVectorTuple(length-1,
+                get(index).equals(Real.Int.ZERO)?nonZeros:nonZeros-1)){
+            return pop();
+        }
+        return asArrayTuple().remove(index);
+    }
+    @Override
+    public FiniteMap remove(MathObject value) {
+        return asArrayTuple().remove(value);
+    }
+    @Override
+    public Tuple tupleRemove(MathObject value) {
+        return asArrayTuple().tupleRemove(value);
+    }
+    @Override
+    public FiniteMap removeKey(MathObject key) {
+        return asArrayTuple().removeKey(key);
+    }
+    @Override
+    public FiniteMap removeIf(BinaryOperator<MathObject> condition) {
+        return asArrayTuple().removeIf(condition);
+    }
+    @Override
+    public FiniteMap headMap(MathObject last, boolean include) {
+        NTuple view=asArrayTuple();
+        FiniteMap ret=view.headMap(last, include);
+        return ret==view?this:ret;
+    }
+    @Override
+    public FiniteMap tailMap(MathObject first, boolean include) {
+        NTuple view=asArrayTuple();
+        FiniteMap ret=view.tailMap(first, include);
+        return ret==view?this:ret;
+    }
+    @Override
+    public FiniteMap range(MathObject first, boolean includeFirst, MathObject last, boolean includeLast) {
+        return asArrayTuple().range(first, includeFirst, last, includeLast);
+    }
+
+    @Override
+    public Iterator<MathObject> iterator() {
+        return new Iterator<MathObject>() {
+            int i=0;
+            Object[] leaf=length>0?leafFor(0):null;
+            @Override
+            public boolean hasNext() {
+                return i<length;
+            }
+            @Override
+            public MathObject next() {
+                if(i>=length)
+                    throw new NoSuchElementException();
+                if((i&MASK)==0)
+                    leaf=leafFor(i);
+                return (MathObject)leaf[(i++)&MASK];
+            }
+        };
+    }
+
+    @Override
+    public MathObject[] toArray() {
+        MathObject[] ret=new MathObject[length];
+        int i=0;
+        for(MathObject o:this){
+            ret[i++]=o;
+        }
+        return ret;
+    }
+
+    @Override
+    public <T extends MathObject> T[] toArray(Class<T[]> cls) {
+        return Arrays.copyOf(toArray(),length,cls);
+    }
+
+    @Override
+    public Tuple replace(Function<MathObject, MathObject> f) {
+        MathObject[] newObjects=new MathObject[length];
+        int i=0;
+        for(MathObject o:this){
+            newObjects[i++]=f.apply(o);
+        }
+        return Tuple.create(newObjects);
+    }
+
+    @Override
+    public FiniteSet domain() {
+        return asArrayTuple().domain();
+    }
+
+    @Override
+    public FiniteSet values() {
+        return FiniteSet.from(toArray());
+    }
+
+    @Override
+    public MathObject evaluateAt(MathObject a) {
+        if(a instanceof Real.Int){
+            BigInteger value=((Real.Int) a).num();
+            if(value.compareTo(BigInteger.ZERO)>=0&&value.compareTo(BigInteger.valueOf(length))<0){
+                return get(value.intValueExact());
+            }
+        }
+        return Real.Int.ZERO;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if(o instanceof Matrix)
+            o=((Matrix) o).asMap();
+        if (!(o instanceof FiniteMap)) return false;
+        if((o instanceof VectorTuple||o instanceof NTuple)&&((Tuple) o).length()==length) {
+            if(((Tuple) o).size()!=nonZeros||(o instanceof VectorTuple&&hashesDiffer(hash,((VectorTuple) o).hash)))
+                return false;
+            Iterator<MathObject> itr=((Tuple) o).iterator();
+            for(MathObject e:this){
+                if(!e.equals(itr.next()))
+                    return false;
+            }
+            return true;
+        }else {
+            return super.equals(o);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        if(hash==0){
+            int hash=0,i=0;
+            for (MathObject o:this) {
+                if(!o.equals(Real.Int.ZERO)) {
+                    hash += Objects.hash(Real.from(i), o);
+                }
+                i++;
+            }
+            this.hash=hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString(BigInteger base, boolean useSmallBase) {
+        return asArrayTuple().toString(base, useSmallBase);
+    }
+    @Override
+    public String toStringFixedPoint(BigInteger base, Real precision, boolean useSmallBase) {
+        return asArrayTuple().toStringFixedPoint(base, precision, useSmallBase);
+    }
+    @Override
+    public String toStringFloat(BigInteger base, Real precision, boolean useSmallBase) {
+        return asArrayTuple().toStringFloat(base, precision, useSmallBase);
+    }
+    @Override
+    public String intsAsString() {
+        return asArrayTuple().intsAsString();
+    }
+}